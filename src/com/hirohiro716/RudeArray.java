@@ -35,6 +35,15 @@ public class RudeArray implements Cloneable, Serializable {
         this.baseArray = new LinkedHashMap<>();
     }
 
+    /**
+     * 保持する値の数の見込みを指定するコンストラクタ。
+     *
+     * @param expectedSize 保持する値の数の見込み
+     */
+    public RudeArray(int expectedSize) {
+        this.baseArray = new LinkedHashMap<>((int) (expectedSize / 0.75f) + 1);
+    }
+
     // 値の保持用
     private LinkedHashMap<Object, Object> baseArray;
 
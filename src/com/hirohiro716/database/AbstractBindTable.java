@@ -179,6 +179,22 @@ public abstract class AbstractBindTable {
      * @throws SQLException
      */
     protected RudeArray[] search(String selectSQL, String afterSQL, WhereSet... whereSetArray) throws SQLException {
+        return this.search(selectSQL, afterSQL, false, whereSetArray);
+    }
+
+    /**
+     * レコードを検索する。<br>
+     * キャッシュを使用する場合、データベースにキャッシュが設定されていてトランザクション中でなければ、
+     * テーブル名・検索条件・オプション句が同じ検索結果をキャッシュから取得する。
+     *
+     * @param selectSQL WHERE句の前のSELECT句
+     * @param afterSQL WHERE句の後に付与するオプション句
+     * @param isCacheable キャッシュを使用するかどうか(SELECT句がこのテーブルのみを参照する場合のみtrue)
+     * @param whereSetArray 検索条件(複数指定するとOR検索になる)
+     * @return 検索結果
+     * @throws SQLException
+     */
+    private RudeArray[] search(String selectSQL, String afterSQL, boolean isCacheable, WhereSet[] whereSetArray) throws SQLException {
         String sql = selectSQL;
         if (whereSetArray.length > 0) {
             sql += " WHERE ";
@@ -195,7 +211,20 @@ public abstract class AbstractBindTable {
             }
         }
         sql = StringConverter.join(sql, builder.toString(), " ", afterSQL, ";");
-        return this.getDatabase().fetchRows(sql, params.toArray());
+        AbstractDatabase database = this.getDatabase();
+        QueryResultCache cache = database.getQueryResultCache();
+        if (isCacheable == false || cache == null || database.isTransactionActive()) {
+            return database.fetchRows(sql, params.toArray());
+        }
+        Object[] parameters = params.toArray();
+        RudeArray[] rows = cache.get(this.getTableName(), sql, parameters);
+        if (rows != null) {
+            return rows;
+        }
+        long version = cache.getVersion(this.getTableName());
+        rows = database.fetchRows(sql, parameters);
+        cache.put(this.getTableName(), sql, parameters, rows, version);
+        return rows;
     }
 
     /**
@@ -206,7 +235,7 @@ public abstract class AbstractBindTable {
      * @throws SQLException
      */
     public RudeArray[] search(WhereSet... whereSetArray) throws SQLException {
-        return this.search(StringConverter.join("SELECT * FROM ", this.getTableName()), "", whereSetArray);
+        return this.search(StringConverter.join("SELECT * FROM ", this.getTableName()), "", true, whereSetArray);
     }
 
     /**
@@ -218,6 +247,109 @@ public abstract class AbstractBindTable {
      * @throws SQLException
      */
     public RudeArray[] search(String afterSQL, WhereSet... whereSetArray) throws SQLException {
-        return this.search(StringConverter.join("SELECT * FROM ", this.getTableName()), afterSQL, whereSetArray);
+        return this.search(StringConverter.join("SELECT * FROM ", this.getTableName()), afterSQL, true, whereSetArray);
+    }
+
+    /**
+     * レコードをキーセットページングで検索する。<br>
+     * OFFSETを使用せず、前のページの最終行の並び替えカラムの値より後のレコードを検索するため、ページの位置に関係なく検索コストが一定になる。<br>
+     * 並び替えカラムにはNULLを含まないカラムを指定し、最後に主キーなどの一意なカラムを含める必要がある。
+     *
+     * @param pageSize 1ページの行数
+     * @param continuationToken 前のページで取得した継続トークン(最初のページの場合はnull)
+     * @param orderByColumns 並び替えカラム(「カラム名」または「カラム名 DESC」の形式)
+     * @param whereSetArray 検索条件(複数指定するとOR検索になる)
+     * @return 検索結果
+     * @throws SQLException 継続トークンが不正な場合など
+     * @throws IllegalArgumentException 1ページの行数が1未満の場合や並び替えカラムが指定されていない場合
+     */
+    public KeysetPage searchPage(int pageSize, String continuationToken, String[] orderByColumns, WhereSet... whereSetArray) throws SQLException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException(StringConverter.join("pageSize must be 1 or more: ", String.valueOf(pageSize)));
+        }
+        if (orderByColumns == null || orderByColumns.length == 0) {
+            throw new IllegalArgumentException("orderByColumns must not be empty.");
+        }
+        String[] columns = new String[orderByColumns.length];
+        boolean[] isDescendings = new boolean[orderByColumns.length];
+        for (int i = 0; i < orderByColumns.length; i++) {
+            String[] parts = orderByColumns[i].trim().split("\\s+");
+            columns[i] = parts[0];
+            if (parts.length > 1) {
+                isDescendings[i] = parts[1].equalsIgnoreCase("DESC");
+            }
+        }
+        StringBuilder builder = new StringBuilder("SELECT * FROM ");
+        builder.append(this.getTableName());
+        ArrayList<Object> params = new ArrayList<>();
+        StringBuilder whereClause = new StringBuilder();
+        for (WhereSet whereSet: whereSetArray) {
+            if (whereClause.length() > 0) {
+                whereClause.append(" OR ");
+            }
+            whereClause.append(whereSet.buildParameterClause());
+            for (Object param: whereSet.buildParameters()) {
+                params.add(param);
+            }
+        }
+        if (continuationToken != null) {
+            Object[] lastValues = KeysetPage.decodeToken(continuationToken, columns.length);
+            if (whereClause.length() > 0) {
+                whereClause.insert(0, "(");
+                whereClause.append(") AND ");
+            }
+            whereClause.append("(");
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    whereClause.append(" OR ");
+                }
+                whereClause.append("(");
+                for (int equalIndex = 0; equalIndex < i; equalIndex++) {
+                    whereClause.append(columns[equalIndex]);
+                    whereClause.append(" = ? AND ");
+                    params.add(lastValues[equalIndex]);
+                }
+                whereClause.append(columns[i]);
+                if (isDescendings[i]) {
+                    whereClause.append(" < ?");
+                } else {
+                    whereClause.append(" > ?");
+                }
+                params.add(lastValues[i]);
+                whereClause.append(")");
+            }
+            whereClause.append(")");
+        }
+        if (whereClause.length() > 0) {
+            builder.append(" WHERE ");
+            builder.append(whereClause);
+        }
+        builder.append(" ORDER BY ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(columns[i]);
+            if (isDescendings[i]) {
+                builder.append(" DESC");
+            }
+        }
+        builder.append(" LIMIT ");
+        builder.append(pageSize + 1);
+        builder.append(";");
+        ArrayList<Object[]> rawValues = new ArrayList<>();
+        RudeArray[] rows = this.getDatabase().fetchRows(builder.toString(), params.toArray(), columns, rawValues);
+        if (rows.length <= pageSize) {
+            return new KeysetPage(rows, null);
+        }
+        RudeArray[] pageRows = new RudeArray[pageSize];
+        System.arraycopy(rows, 0, pageRows, 0, pageSize);
+        Object[] lastValues = rawValues.get(pageSize - 1);
+        for (int i = 0; i < columns.length; i++) {
+            if (lastValues[i] == null) {
+                throw new SQLException(StringConverter.join(columns[i], " is not a valid keyset column."));
+            }
+        }
+        return new KeysetPage(pageRows, KeysetPage.encodeToken(lastValues));
     }
 }
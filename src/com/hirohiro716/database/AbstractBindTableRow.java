@@ -1,6 +1,9 @@
 package com.hirohiro716.database;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 import com.hirohiro716.RudeArray;
 
@@ -47,6 +50,7 @@ public abstract class AbstractBindTableRow extends AbstractBindTable {
      */
     public void setDefaultRow() {
         this.row = this.createDefaultRow();
+        this.editingRow = null;
     }
     
     /**
@@ -79,6 +83,36 @@ public abstract class AbstractBindTableRow extends AbstractBindTable {
             this.getDatabase().rollback();
             throw new DataNotFoundException();
         }
+        this.editingRow = this.row.clone();
+    }
+
+    private RudeArray editingRow = null;
+
+    /**
+     * editメソッドで取得した時点から値が変更されたカラムのみの連想配列を取得する。<br>
+     * editメソッドで編集を開始していない場合は編集中レコードの連想配列をそのまま返す。
+     *
+     * @return 変更されたカラムの連想配列
+     */
+    protected RudeArray getChangedValues() {
+        if (this.editingRow == null) {
+            return this.row;
+        }
+        String[] changedColumns = RowDifference.findChangedColumns(this.editingRow, this.row);
+        RudeArray values = new RudeArray(changedColumns.length);
+        for (String column: changedColumns) {
+            values.put(column, this.row.get(column));
+        }
+        return values;
+    }
+
+    /**
+     * 更新後の連想配列を次の差分の比較元として保持する。
+     */
+    protected void commitChangedValues() {
+        if (this.editingRow != null) {
+            this.editingRow = this.row.clone();
+        }
     }
     
     /**
@@ -89,7 +123,8 @@ public abstract class AbstractBindTableRow extends AbstractBindTable {
     public abstract boolean isDeleted();
     
     /**
-     * 編集中のレコードを保持している連想配列で更新する。
+     * 編集中のレコードを保持している連想配列で更新する。<br>
+     * editメソッドで編集を開始している場合は値が変更されたカラムのみを更新し、変更がなければSQLを実行しない。
      *
      * @throws SQLException
      * @throws DataNotFoundException
@@ -98,12 +133,12 @@ public abstract class AbstractBindTableRow extends AbstractBindTable {
         if (this.getWhereSet() == null) {
             throw new SQLException("Invalid operation because search condition is not set.");
         }
-        StringBuilder stringBuilder = new StringBuilder("SELECT * FROM ");
-        stringBuilder.append(this.getTableName());
-        stringBuilder.append(" WHERE ");
-        stringBuilder.append(this.getWhereSet().buildParameterClause());
-        stringBuilder.append(";");
-        this.getDatabase().update(this.row, stringBuilder.toString(), this.getWhereSet().buildParameters());
+        RudeArray values = this.getChangedValues();
+        if (values.size() == 0) {
+            return;
+        }
+        this.getDatabase().update(values, this.getTableName(), this.getWhereSet());
+        this.commitChangedValues();
     }
     
     /**
@@ -122,6 +157,7 @@ public abstract class AbstractBindTableRow extends AbstractBindTable {
         stringBuilder.append(this.getWhereSet().buildParameterClause());
         stringBuilder.append(";");
         int result = this.getDatabase().execute(stringBuilder.toString(), this.getWhereSet().buildParameters());
+        this.getDatabase().invalidateQueryResultCache(this.getTableName());
         if (result == 0) {
             throw new DataNotFoundException();
         }
@@ -161,4 +197,144 @@ public abstract class AbstractBindTableRow extends AbstractBindTable {
             this.setRow(oldRow);
         }
         return false;
-    }}
+    }
+
+    /**
+     * 複数のキーでレコードを取得する際に、キーの順番を検索結果に含めるための列の別名。
+     */
+    private static final String KEY_ORDINAL_COLUMN = "bind_key_ordinal";
+
+    /**
+     * 1回のSELECTでUNION ALLを使用して結合する検索の最大数。
+     */
+    private static final int MAXIMUM_KEYS_PER_SELECT = 500;
+
+    /**
+     * 複数のキーに一致するレコードをまとめて取得する。<br>
+     * キーの値はカラムのJDBC型に適した型に変換してから検索し、キーとレコードの対応はデータベースの比較結果で決定する。
+     * そのため、数値のカラムに文字列のキーを指定した場合や、照合順序によって一致する値も正しく対応付けられる。<br>
+     * キーをgetMaximumParameterCountメソッドのパラメータ数に収まるように分割し、分割ごとに1回のSELECTで取得する。
+     *
+     * @param keyColumns キーのカラム名
+     * @param keys キーの値の配列(keyColumnsと同じ順序)
+     * @return keysと同じ順序のレコードの連想配列(レコードがない場合はnull)
+     * @throws SQLException
+     */
+    public RudeArray[] fetchRows(String[] keyColumns, List<Object[]> keys) throws SQLException {
+        ResultShape shape = this.getDatabase().findTableShape(this.getTableName());
+        ColumnBinder[] binders = new ColumnBinder[keyColumns.length];
+        for (int columnIndex = 0; columnIndex < keyColumns.length; columnIndex++) {
+            binders[columnIndex] = ColumnBinder.NONE;
+            for (int i = 0; i < shape.getColumnCount(); i++) {
+                if (shape.getColumnNames()[i].equals(keyColumns[columnIndex])) {
+                    binders[columnIndex] = shape.getBinders()[i];
+                    break;
+                }
+            }
+        }
+        LinkedHashMap<List<Object>, Integer> uniqueKeyIndexes = new LinkedHashMap<>();
+        ArrayList<Object[]> uniqueKeys = new ArrayList<>();
+        int[] keyIndexes = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            keyIndexes[i] = -1;
+            Object[] convertedKey = new Object[keyColumns.length];
+            for (int columnIndex = 0; columnIndex < keyColumns.length; columnIndex++) {
+                convertedKey[columnIndex] = binders[columnIndex].convert(keys.get(i)[columnIndex]);
+            }
+            List<Object> comparisonKey = RowDifference.buildKey(convertedKey);
+            if (comparisonKey == null) {
+                continue;
+            }
+            Integer uniqueKeyIndex = uniqueKeyIndexes.get(comparisonKey);
+            if (uniqueKeyIndex == null) {
+                uniqueKeyIndex = uniqueKeys.size();
+                uniqueKeyIndexes.put(comparisonKey, uniqueKeyIndex);
+                uniqueKeys.add(convertedKey);
+            }
+            keyIndexes[i] = uniqueKeyIndex;
+        }
+        RudeArray[] foundRows = new RudeArray[uniqueKeys.size()];
+        int chunkSize = Math.max(Math.min(this.getDatabase().getMaximumParameterCount() / keyColumns.length, MAXIMUM_KEYS_PER_SELECT), 1);
+        for (int firstIndex = 0; firstIndex < uniqueKeys.size(); firstIndex += chunkSize) {
+            this.fetchRowsChunk(keyColumns, uniqueKeys, firstIndex, Math.min(firstIndex + chunkSize, uniqueKeys.size()), foundRows);
+        }
+        RudeArray[] rows = new RudeArray[keys.size()];
+        for (int i = 0; i < rows.length; i++) {
+            if (keyIndexes[i] >= 0) {
+                rows[i] = foundRows[keyIndexes[i]];
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 分割したキーに一致するレコードを1回のSELECTで取得する。<br>
+     * キーごとの検索をUNION ALLで結合し、各レコードにキーの順番を付与して取得する。
+     *
+     * @param keyColumns キーのカラム名
+     * @param keys 変換済みのキーの値の配列
+     * @param firstIndex 分割の最初のキーの位置
+     * @param endIndex 分割の最後のキーの次の位置
+     * @param foundRows 取得したレコードをキーの順番で格納する配列
+     * @throws SQLException
+     */
+    private void fetchRowsChunk(String[] keyColumns, List<Object[]> keys, int firstIndex, int endIndex, RudeArray[] foundRows) throws SQLException {
+        StringBuilder stringBuilder = new StringBuilder();
+        ArrayList<Object> params = new ArrayList<>();
+        for (int i = firstIndex; i < endIndex; i++) {
+            if (i > firstIndex) {
+                stringBuilder.append(" UNION ALL ");
+            }
+            stringBuilder.append("SELECT ");
+            stringBuilder.append(i);
+            stringBuilder.append(" AS ");
+            stringBuilder.append(KEY_ORDINAL_COLUMN);
+            stringBuilder.append(", ");
+            stringBuilder.append(this.getTableName());
+            stringBuilder.append(".* FROM ");
+            stringBuilder.append(this.getTableName());
+            stringBuilder.append(" WHERE ");
+            for (int columnIndex = 0; columnIndex < keyColumns.length; columnIndex++) {
+                if (columnIndex > 0) {
+                    stringBuilder.append(" AND ");
+                }
+                stringBuilder.append(keyColumns[columnIndex]);
+                stringBuilder.append(" = ?");
+                params.add(keys.get(i)[columnIndex]);
+            }
+        }
+        stringBuilder.append(";");
+        for (RudeArray row: this.getDatabase().fetchRows(stringBuilder.toString(), params.toArray())) {
+            Number ordinal = (Number) row.get(KEY_ORDINAL_COLUMN);
+            row.removeKey(KEY_ORDINAL_COLUMN);
+            if (ordinal != null && foundRows[ordinal.intValue()] == null) {
+                foundRows[ordinal.intValue()] = row;
+            }
+        }
+    }
+
+    /**
+     * 複数のキーに一致するレコードが存在するかをまとめて確認する。削除済みのレコードは存在しないとみなす。
+     *
+     * @param keyColumns キーのカラム名
+     * @param keys キーの値の配列(keyColumnsと同じ順序)
+     * @return keysと同じ順序の存在するかどうか
+     * @throws SQLException
+     */
+    public boolean[] isExist(String[] keyColumns, List<Object[]> keys) throws SQLException {
+        RudeArray[] rows = this.fetchRows(keyColumns, keys);
+        boolean[] results = new boolean[rows.length];
+        RudeArray oldRow = this.getRow();
+        try {
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] != null) {
+                    this.setRow(rows[i]);
+                    results[i] = this.isDeleted() == false;
+                }
+            }
+        } finally {
+            this.setRow(oldRow);
+        }
+        return results;
+    }
+}
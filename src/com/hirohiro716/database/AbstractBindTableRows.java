@@ -1,10 +1,17 @@
 package com.hirohiro716.database;
 
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 import com.hirohiro716.RudeArray;
+import com.hirohiro716.StringConverter;
 
 /**
  * ORMのようなものを提供する抽象クラス。
@@ -108,8 +115,84 @@ public abstract class AbstractBindTableRows extends AbstractBindTable {
             }
         }
         this.setRows(this.fetchEditRows(stringBuilder.toString()));
+        this.takeSnapshot();
+    }
+
+    /**
+     * 差分更新に使用する主キーのカラム名を取得する。<br>
+     * nullではない値を返すようにオーバーライドすると、updateメソッドは全レコードの置き換えではなく
+     * editメソッドで取得した時点のレコードとの差分のみを追加・更新・削除する。
+     *
+     * @return 主キーのカラム名(差分更新を行わない場合はnull)
+     */
+    protected String[] getPrimaryKeyColumns() {
+        return null;
+    }
+
+    /**
+     * 主キーの値から、型の違いを吸収した比較用のキーを作成する。
+     *
+     * @param row レコードの連想配列
+     * @return 比較用のキー(主キーが宣言されていない場合や主キーの値にnullが含まれる場合はnull)
+     */
+    protected List<Object> buildPrimaryKey(RudeArray row) {
+        String[] keyColumns = this.getPrimaryKeyColumns();
+        if (keyColumns == null) {
+            return null;
+        }
+        return RowDifference.buildKey(row, keyColumns);
+    }
+
+    /**
+     * 差分更新で追加または変更されるレコードの連想配列を、SQLを作成する前に編集する。これはupdateメソッドから自動的に呼び出される。<br>
+     * 変更されていないレコードに対しては呼び出されない。
+     *
+     * @param row 追加または変更されるレコードの連想配列
+     * @param before 編集開始時点のレコードの連想配列(追加されるレコードの場合はnull)
+     */
+    protected void prepareChangedRow(RudeArray row, RudeArray before) {
+    }
+
+    private LinkedHashMap<List<Object>, RudeArray> snapshot = null;
+
+    /**
+     * 差分更新のために編集開始時点のレコードの複製を保持する。<br>
+     * バイト配列や日時のように値そのものを変更できるオブジェクトは、編集中の変更を検出できるように値も複製する。
+     */
+    private void takeSnapshot() {
+        String[] keyColumns = this.getPrimaryKeyColumns();
+        if (keyColumns == null) {
+            this.snapshot = null;
+            return;
+        }
+        this.snapshot = new LinkedHashMap<>();
+        for (RudeArray row: this.rows) {
+            List<Object> key = RowDifference.buildKey(row, keyColumns);
+            if (key != null) {
+                this.snapshot.put(key, copyRow(row));
+            }
+        }
     }
     
+    /**
+     * レコードの連想配列を、バイト配列と日時の値も含めて複製する。
+     *
+     * @param row レコードの連想配列
+     * @return 複製した連想配列
+     */
+    private static RudeArray copyRow(RudeArray row) {
+        RudeArray copiedRow = row.clone();
+        for (String key: copiedRow.getKeysAtString()) {
+            Object value = copiedRow.get(key);
+            if (value instanceof byte[]) {
+                copiedRow.put(key, ((byte[]) value).clone());
+            } else if (value instanceof Date) {
+                copiedRow.put(key, ((Date) value).clone());
+            }
+        }
+        return copiedRow;
+    }
+
     /**
      * 検索条件が空の状態の上書き(全レコード置き換え)を許可するかどうか。
      *
@@ -118,11 +201,190 @@ public abstract class AbstractBindTableRows extends AbstractBindTable {
     public abstract boolean isPermittedSearchConditioEmptyUpdate();
     
     /**
-     * 編集している複数のレコードを保持している連想配列に置き換える。
+     * 編集している複数のレコードを保持している連想配列に置き換える。<br>
+     * getPrimaryKeyColumnsメソッドで主キーが宣言されている場合はeditメソッドで取得した時点との差分のみを更新する。
+     * トランザクションが開始されていない場合は1つのトランザクション内で実行される。
      *
      * @throws SQLException
      */
     public void update() throws SQLException {
+        AbstractDatabase database = this.getDatabase();
+        if (database.isTransactionActive()) {
+            this.updateRows();
+            return;
+        }
+        database.beginImplicitTransaction();
+        boolean isSucceeded = false;
+        try {
+            this.updateRows();
+            isSucceeded = true;
+        } finally {
+            database.endImplicitTransaction(isSucceeded);
+        }
+    }
+
+    /**
+     * 差分更新か全レコードの置き換えを行う。
+     *
+     * @throws SQLException
+     */
+    private void updateRows() throws SQLException {
+        this.getDatabase().invalidateQueryResultCache(this.getTableName());
+        String[] keyColumns = this.getPrimaryKeyColumns();
+        if (keyColumns == null || this.snapshot == null) {
+            this.replaceRows();
+            return;
+        }
+        this.applyDifference(keyColumns);
+        this.takeSnapshot();
+    }
+
+    /**
+     * 差分更新でデータベースオブジェクトにバッチの件数が設定されていない場合に使用するバッチの件数。
+     */
+    private static final int DIFFERENCE_BATCH_SIZE = 100;
+
+    /**
+     * 編集開始時点のレコードと比較して、追加・更新・削除されたレコードのみをデータベースに反映する。<br>
+     * 更新はSET句が同じレコードごと、削除は主キーごとにバッチで実行し、値はカラムのJDBC型に適した型に変換して入力する。
+     *
+     * @param keyColumns 主キーのカラム名
+     * @throws SQLException
+     */
+    private void applyDifference(String[] keyColumns) throws SQLException {
+        AbstractDatabase database = this.getDatabase();
+        ResultShape shape = database.findTableShape(this.getTableName());
+        HashSet<String> tableColumns = new HashSet<>(Arrays.asList(shape.getColumnNames()));
+        HashMap<String, Integer> columnTypes = new HashMap<>();
+        for (int i = 0; i < shape.getColumnCount(); i++) {
+            columnTypes.put(shape.getColumnNames()[i], shape.getColumnTypes()[i]);
+        }
+        int[] keyTypes = new int[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyTypes[i] = findColumnType(columnTypes, keyColumns[i]);
+        }
+        StringBuilder keyClause = new StringBuilder();
+        for (String keyColumn: keyColumns) {
+            if (keyClause.length() > 0) {
+                keyClause.append(" AND ");
+            }
+            keyClause.append(keyColumn);
+            keyClause.append(" = ?");
+        }
+        ArrayList<RudeArray> insertRows = new ArrayList<>();
+        LinkedHashMap<String, ArrayList<Object[]>> updateParams = new LinkedHashMap<>();
+        HashMap<String, int[]> updateTypes = new HashMap<>();
+        HashSet<List<Object>> currentKeys = new HashSet<>();
+        for (RudeArray row: this.rows) {
+            List<Object> key = RowDifference.buildKey(row, keyColumns);
+            RudeArray before = null;
+            if (key != null && currentKeys.add(key)) {
+                before = this.snapshot.get(key);
+            }
+            if (before == null) {
+                this.prepareChangedRow(row, null);
+                insertRows.add(row);
+                continue;
+            }
+            if (findChangedTableColumns(before, row, tableColumns).size() == 0) {
+                continue;
+            }
+            this.prepareChangedRow(row, before);
+            ArrayList<String> changedColumns = findChangedTableColumns(before, row, tableColumns);
+            StringBuilder sql = new StringBuilder("UPDATE ");
+            sql.append(this.getTableName());
+            sql.append(" SET ");
+            Object[] params = new Object[changedColumns.size() + keyColumns.length];
+            int[] types = new int[params.length];
+            for (int i = 0; i < changedColumns.size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(changedColumns.get(i));
+                sql.append(" = ?");
+                params[i] = row.get(changedColumns.get(i));
+                types[i] = findColumnType(columnTypes, changedColumns.get(i));
+            }
+            sql.append(" WHERE ");
+            sql.append(keyClause);
+            sql.append(";");
+            for (int i = 0; i < keyColumns.length; i++) {
+                params[changedColumns.size() + i] = before.get(keyColumns[i]);
+                types[changedColumns.size() + i] = keyTypes[i];
+            }
+            ArrayList<Object[]> paramsArray = updateParams.get(sql.toString());
+            if (paramsArray == null) {
+                paramsArray = new ArrayList<>();
+                updateParams.put(sql.toString(), paramsArray);
+                updateTypes.put(sql.toString(), types);
+            }
+            paramsArray.add(params);
+        }
+        ArrayList<Object[]> deleteParams = new ArrayList<>();
+        for (List<Object> key: this.snapshot.keySet()) {
+            if (currentKeys.contains(key) == false) {
+                RudeArray before = this.snapshot.get(key);
+                Object[] params = new Object[keyColumns.length];
+                for (int i = 0; i < keyColumns.length; i++) {
+                    params[i] = before.get(keyColumns[i]);
+                }
+                deleteParams.add(params);
+            }
+        }
+        int batchSize = database.getBatchSize();
+        if (batchSize <= 0) {
+            batchSize = DIFFERENCE_BATCH_SIZE;
+        }
+        if (deleteParams.size() > 0) {
+            database.execute(StringConverter.join("DELETE FROM ", this.getTableName(), " WHERE ", keyClause.toString(), ";"), deleteParams, keyTypes, batchSize);
+        }
+        for (String sql: updateParams.keySet()) {
+            database.execute(sql, updateParams.get(sql), updateTypes.get(sql), batchSize);
+        }
+        if (insertRows.size() > 0) {
+            database.insert(insertRows, this.getTableName());
+        }
+    }
+
+    /**
+     * カラムのJDBC型を取得する。
+     *
+     * @param columnTypes カラム名とJDBC型の連想配列
+     * @param column カラム名
+     * @return JDBC型(テーブルに存在しないカラムの場合はTypes.OTHER)
+     */
+    private static int findColumnType(HashMap<String, Integer> columnTypes, String column) {
+        Integer columnType = columnTypes.get(column);
+        if (columnType == null) {
+            return Types.OTHER;
+        }
+        return columnType;
+    }
+
+    /**
+     * 編集開始時点のレコードと比較して、値が変更されたテーブルのカラムを取得する。
+     *
+     * @param before 編集開始時点のレコードの連想配列
+     * @param after 編集後のレコードの連想配列
+     * @param tableColumns テーブルのカラム名
+     * @return 値が変更されたカラム名
+     */
+    private static ArrayList<String> findChangedTableColumns(RudeArray before, RudeArray after, HashSet<String> tableColumns) {
+        ArrayList<String> changedColumns = new ArrayList<>();
+        for (String column: RowDifference.findChangedColumns(before, after)) {
+            if (tableColumns.contains(column)) {
+                changedColumns.add(column);
+            }
+        }
+        return changedColumns;
+    }
+
+    /**
+     * 検索条件に該当するレコードを削除して、保持している連想配列を一括で追加する。
+     *
+     * @throws SQLException
+     */
+    private void replaceRows() throws SQLException {
         StringBuilder stringBuilder = new StringBuilder("DELETE FROM ");
         stringBuilder.append(this.getTableName());
         if (this.getWhereSet() == null) {
@@ -137,9 +399,7 @@ public abstract class AbstractBindTableRows extends AbstractBindTable {
             stringBuilder.append(";");
             this.getDatabase().execute(stringBuilder.toString(), this.getWhereSet().buildParameters());
         }
-        for (RudeArray row: this.rows) {
-            this.getDatabase().insert(row, this.getTableName());
-        }
+        this.getDatabase().insert(this.rows, this.getTableName());
     }
 
     /**
@@ -168,4 +428,5 @@ public abstract class AbstractBindTableRows extends AbstractBindTable {
             throw new SQLException(exception);
         }
         return false;
-    }}
+    }
+}
@@ -2,23 +2,24 @@ package com.hirohiro716.database;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
 import java.sql.Statement;
-import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.sql.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 import com.hirohiro716.StringConverter;
-import com.hirohiro716.datetime.Datetime;
 import com.hirohiro716.RudeArray;
 
 /**
@@ -101,6 +102,7 @@ public abstract class AbstractDatabase implements Closeable {
      * @param connection コネクション
      */
     public void setConnection(Connection connection) {
+        this.statementCache.clear();
         this.connection = connection;
     }
 
@@ -133,8 +135,130 @@ public abstract class AbstractDatabase implements Closeable {
      */
     public abstract void connect(String connectionString) throws ClassNotFoundException, SQLException;
     
+    private DatabasePool<?> pool = null;
+
+    /**
+     * このデータベースオブジェクトを貸し出しているコネクションプールをセットする。<br>
+     * この時点の設定を保持し、プールに返却された際にresetForReuseメソッドで元に戻す。
+     *
+     * @param pool コネクションプール
+     * @throws SQLException
+     */
+    void setPool(DatabasePool<?> pool) throws SQLException {
+        this.pool = pool;
+        this.initialSettings = new Settings();
+    }
+
+    private Settings initialSettings = null;
+
+    /**
+     * 利用者が変更できる設定を保持するクラス。
+     *
+     * @author hiro
+     */
+    private class Settings {
+
+        /**
+         * コンストラクタ。現在の設定を保持する。
+         *
+         * @throws SQLException
+         */
+        private Settings() throws SQLException {
+            AbstractDatabase database = AbstractDatabase.this;
+            this.timeout = database.timeout;
+            this.batchSize = database.batchSize;
+            this.fetchSize = database.fetchSize;
+            this.bulkInsertChunkSize = database.bulkInsertChunkSize;
+            this.isUpdateWithCursor = database.isUpdateWithCursor;
+            this.queryListeners = new ArrayList<>(database.queryListeners);
+            this.queryResultCache = database.queryResultCache;
+            this.maximumRetryCount = database.maximumRetryCount;
+            this.initialRetryDelayMillis = database.initialRetryDelayMillis;
+            this.maximumRetryDelayMillis = database.maximumRetryDelayMillis;
+            this.transactionIsolation = database.connection.getTransactionIsolation();
+        }
+
+        private int timeout;
+
+        private int batchSize;
+
+        private int fetchSize;
+
+        private int bulkInsertChunkSize;
+
+        private boolean isUpdateWithCursor;
+
+        private ArrayList<QueryListener> queryListeners;
+
+        private QueryResultCache queryResultCache;
+
+        private int maximumRetryCount;
+
+        private long initialRetryDelayMillis;
+
+        private long maximumRetryDelayMillis;
+
+        private int transactionIsolation;
+
+        /**
+         * 保持している設定に戻す。
+         *
+         * @throws SQLException
+         */
+        private void restore() throws SQLException {
+            AbstractDatabase database = AbstractDatabase.this;
+            database.timeout = this.timeout;
+            database.batchSize = this.batchSize;
+            database.fetchSize = this.fetchSize;
+            database.bulkInsertChunkSize = this.bulkInsertChunkSize;
+            database.isUpdateWithCursor = this.isUpdateWithCursor;
+            database.queryListeners = new ArrayList<>(this.queryListeners);
+            database.queryResultCache = this.queryResultCache;
+            database.maximumRetryCount = this.maximumRetryCount;
+            database.initialRetryDelayMillis = this.initialRetryDelayMillis;
+            database.maximumRetryDelayMillis = this.maximumRetryDelayMillis;
+            if (database.connection.getTransactionIsolation() != this.transactionIsolation) {
+                database.connection.setTransactionIsolation(this.transactionIsolation);
+            }
+        }
+    }
+
+    /**
+     * コネクションを閉じる。コネクションプールから取得したデータベースオブジェクトの場合はコネクションを閉じずにプールに返却する。
+     */
     @Override
     public void close() {
+        if (this.pool != null) {
+            this.pool.giveBack(this);
+            return;
+        }
+        this.closePhysically();
+    }
+
+    /**
+     * コネクションプールに返却された接続を次の貸し出しに備えて初期状態に戻す。<br>
+     * 終了していないトランザクションはロールバックされ、リスナーやタイムアウトなどの設定はプールで作成された時点のものに戻される。
+     *
+     * @throws SQLException
+     */
+    protected void resetForReuse() throws SQLException {
+        if (this.connection.getAutoCommit() == false) {
+            this.connection.rollback();
+            this.connection.setAutoCommit(true);
+        }
+        this.invalidateUncommittedQueryResultCache();
+        this.savepointDepth = 0;
+        if (this.initialSettings != null) {
+            this.initialSettings.restore();
+        }
+    }
+
+    /**
+     * コネクションプールの有無に関わらずコネクションを閉じる。
+     */
+    void closePhysically() {
+        this.statementCache.clear();
+        this.tableShapeCache.clear();
         try {
             this.connection.close();
         } catch (SQLException exception) {
@@ -154,6 +278,268 @@ public abstract class AbstractDatabase implements Closeable {
         return (this.connection == null || this.connection.isClosed());
     }
 
+    private PreparedStatementCache statementCache = new PreparedStatementCache(32);
+
+    /**
+     * 使い回すプリペアードステートメントの上限数を取得する。
+     *
+     * @return 上限数
+     */
+    public int getStatementCacheSize() {
+        return this.statementCache.getCapacity();
+    }
+
+    /**
+     * 使い回すプリペアードステートメントの上限数を設定する。初期値は32。<br>
+     * 上限を超えた場合は最も長く使用されていないものから閉じられる。
+     *
+     * @param statementCacheSize 上限数(0以下の場合は使い回さない)
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCache.setCapacity(statementCacheSize);
+    }
+
+    /**
+     * プリペアードステートメントを使い回した回数を取得する。
+     *
+     * @return 回数
+     */
+    public long getStatementCacheHitCount() {
+        return this.statementCache.getHitCount();
+    }
+
+    /**
+     * プリペアードステートメントを新しく作成した回数を取得する。
+     *
+     * @return 回数
+     */
+    public long getStatementCacheMissCount() {
+        return this.statementCache.getMissCount();
+    }
+
+    /**
+     * 使い回すために保持しているプリペアードステートメントをすべて閉じる。
+     */
+    public void clearStatementCache() {
+        this.statementCache.clear();
+    }
+
+    /**
+     * SQLに対するプリペアードステートメントを取得する。保持しているものがあれば使い回す。<br>
+     * 取得したステートメントは使用後に必ずreleaseStatementメソッドに渡す。
+     *
+     * @param sql SQL
+     * @return プリペアードステートメント
+     * @throws SQLException
+     */
+    private PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement statement = this.statementCache.acquire(this.connection, sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        this.runningStatement = statement;
+        return statement;
+    }
+
+    /**
+     * 使用が終わったプリペアードステートメントを返却する。
+     *
+     * @param statement プリペアードステートメント
+     */
+    private void releaseStatement(PreparedStatement statement) {
+        if (this.runningStatement == statement) {
+            this.runningStatement = null;
+        }
+        this.statementCache.release(statement);
+    }
+
+    private volatile Statement runningStatement = null;
+
+    /**
+     * 実行中のSQLの中止をデータベースに要求する。別のスレッドから呼び出すことを想定している。<br>
+     * 中止されたSQLを実行していたメソッドはSQLExceptionをスローする。
+     *
+     * @throws SQLException
+     */
+    public void cancel() throws SQLException {
+        Statement statement = this.runningStatement;
+        if (statement != null) {
+            statement.cancel();
+        }
+    }
+
+    private ArrayList<QueryListener> queryListeners = new ArrayList<>();
+
+    /**
+     * 実行されたSQLの通知を受け取るリスナーを追加する。
+     *
+     * @param listener リスナー
+     */
+    public void addQueryListener(QueryListener listener) {
+        this.queryListeners.add(listener);
+    }
+
+    /**
+     * 実行されたSQLの通知を受け取るリスナーを削除する。
+     *
+     * @param listener リスナー
+     */
+    public void removeQueryListener(QueryListener listener) {
+        this.queryListeners.remove(listener);
+    }
+
+    private QueryResultCache queryResultCache = null;
+
+    /**
+     * AbstractBindTableの検索結果を保持するキャッシュを取得する。
+     *
+     * @return キャッシュ(使用しない場合はnull)
+     */
+    public QueryResultCache getQueryResultCache() {
+        return this.queryResultCache;
+    }
+
+    /**
+     * AbstractBindTableの検索結果を保持するキャッシュを設定する。初期値はnullでキャッシュを使用しない。<br>
+     * 同じテーブルを更新するすべてのデータベースオブジェクトに同じキャッシュを設定する必要がある。
+     *
+     * @param queryResultCache キャッシュ
+     */
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
+    private HashSet<String> uncommittedTableNames = new HashSet<>();
+
+    /**
+     * キャッシュしているテーブルの検索結果を破棄する。<br>
+     * トランザクション中の場合はトランザクションの終了時にもう一度破棄し、ほかの接続が終了前に保持した古い検索結果が残らないようにする。
+     * 更新系SQLを直接実行してテーブルを更新した場合はこのメソッドを呼び出す。
+     *
+     * @param tableName テーブル名
+     */
+    public void invalidateQueryResultCache(String tableName) {
+        if (this.queryResultCache == null) {
+            return;
+        }
+        this.queryResultCache.invalidate(tableName);
+        if (this.isTransactionActive()) {
+            this.uncommittedTableNames.add(tableName);
+        }
+    }
+
+    /**
+     * トランザクション中に更新したテーブルの検索結果を破棄する。これはトランザクションの終了時に自動的に呼び出される。
+     */
+    protected void invalidateUncommittedQueryResultCache() {
+        if (this.queryResultCache != null) {
+            for (String tableName: this.uncommittedTableNames) {
+                this.queryResultCache.invalidate(tableName);
+            }
+        }
+        this.uncommittedTableNames.clear();
+    }
+
+    /**
+     * SQLの処理時間を計測してリスナーに通知するクラス。リスナーがない場合は何もしない。
+     *
+     * @author hiro
+     */
+    private class QueryTrace {
+
+        /**
+         * コンストラクタ。計測を開始する。
+         *
+         * @param sql SQL
+         * @param parameterCount パラメータの数
+         */
+        private QueryTrace(String sql, int parameterCount) {
+            this.isEnabled = AbstractDatabase.this.queryListeners.size() > 0;
+            this.sql = sql;
+            this.parameterCount = parameterCount;
+            if (this.isEnabled) {
+                this.startTime = System.nanoTime();
+            }
+        }
+
+        private boolean isEnabled;
+
+        private String sql;
+
+        private int parameterCount;
+
+        private long startTime;
+
+        private long preparedTime = 0;
+
+        private long executedTime = 0;
+
+        private long numberOfRows = -1;
+
+        private Throwable exception = null;
+
+        /**
+         * ステートメントの準備が終了したことを記録する。
+         */
+        private void prepared() {
+            if (this.isEnabled) {
+                this.preparedTime = System.nanoTime();
+            }
+        }
+
+        /**
+         * SQLの実行が終了したことを記録する。
+         */
+        private void executed() {
+            if (this.isEnabled) {
+                this.executedTime = System.nanoTime();
+            }
+        }
+
+        /**
+         * 取得または更新したレコード数を記録する。
+         *
+         * @param numberOfRows レコード数
+         */
+        private void setNumberOfRows(long numberOfRows) {
+            this.numberOfRows = numberOfRows;
+        }
+
+        /**
+         * 発生した例外を記録する。
+         *
+         * @param exception 例外
+         */
+        private void failed(Throwable exception) {
+            this.exception = exception;
+        }
+
+        /**
+         * 計測を終了してリスナーに通知する。
+         */
+        private void finish() {
+            if (this.isEnabled == false) {
+                return;
+            }
+            long endTime = System.nanoTime();
+            long preparedTime = this.preparedTime;
+            if (preparedTime == 0) {
+                preparedTime = endTime;
+            }
+            long executedTime = this.executedTime;
+            if (executedTime == 0) {
+                executedTime = endTime;
+            }
+            Connection connection = AbstractDatabase.this.connection;
+            QueryEvent event = new QueryEvent(this.sql, this.parameterCount, this.numberOfRows, preparedTime - this.startTime, executedTime - preparedTime, endTime - executedTime,
+                    Integer.toHexString(System.identityHashCode(connection)), this.exception);
+            for (QueryListener listener: AbstractDatabase.this.queryListeners.toArray(new QueryListener[AbstractDatabase.this.queryListeners.size()])) {
+                try {
+                    listener.queryExecuted(event);
+                } catch (Exception exception) {
+                    exception.printStackTrace();
+                }
+            }
+        }
+    }
+
     /**
      * 更新系SQLを実行する。
      *
@@ -162,9 +548,20 @@ public abstract class AbstractDatabase implements Closeable {
      * @throws SQLException
      */
     public int execute(String sql) throws SQLException {
+        QueryTrace trace = new QueryTrace(sql, 0);
         try (Statement statement = this.connection.createStatement()) {
+            trace.prepared();
             statement.setQueryTimeout(this.timeout);
-            return statement.executeUpdate(sql);
+            this.runningStatement = statement;
+            int result = statement.executeUpdate(sql);
+            trace.setNumberOfRows(result);
+            return result;
+        } catch (SQLException exception) {
+            trace.failed(exception);
+            throw exception;
+        } finally {
+            this.runningStatement = null;
+            trace.finish();
         }
     }
 
@@ -177,17 +574,68 @@ public abstract class AbstractDatabase implements Closeable {
      * @throws SQLException
      */
     public int execute(String sql, Object[] params) throws SQLException {
-        try (PreparedStatement statement = this.connection.prepareStatement(sql)) {
+        QueryTrace trace = new QueryTrace(sql, params.length);
+        PreparedStatement statement = this.prepareStatement(sql);
+        trace.prepared();
+        try {
             statement.setQueryTimeout(this.timeout);
             for (int i = 0; i < params.length; i++) {
                 statement.setObject(i + 1, castSearchValue(params[i]));
             }
-            return statement.executeUpdate();
+            int result = statement.executeUpdate();
+            trace.setNumberOfRows(result);
+            return result;
+        } catch (SQLException exception) {
+            trace.failed(exception);
+            throw exception;
+        } finally {
+            this.releaseStatement(statement);
+            trace.finish();
+        }
+    }
+
+    private int batchSize = 0;
+
+    /**
+     * 複数回の更新をまとめて送信するバッチの件数を取得する。
+     *
+     * @return バッチの件数(0以下の場合はバッチを使用しない)
+     */
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * 複数回の更新をまとめて送信するバッチの件数を設定する。<br>
+     * 1以上を指定するとexecute(String, Collection)メソッドとPreparedStatementEachクラスがJDBCのバッチ実行を使用する。
+     *
+     * @param batchSize バッチの件数(0以下の場合はバッチを使用しない)
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * バッチ実行の結果から更新レコード数を合計する。件数が不明な結果は1件として数える。
+     *
+     * @param updateCounts バッチ実行の結果
+     * @return 更新レコード数
+     */
+    private static int sumUpdateCounts(int[] updateCounts) {
+        int updateCount = 0;
+        for (int count: updateCounts) {
+            if (count >= 0) {
+                updateCount += count;
+            } else if (count == Statement.SUCCESS_NO_INFO) {
+                updateCount++;
+            }
         }
+        return updateCount;
     }
 
     /**
-     * プリペアードステートメントで更新系SQLを複数回実行する。
+     * プリペアードステートメントで更新系SQLを複数回実行する。<br>
+     * バッチの件数が設定されている場合はその件数ごとにまとめて送信する。
      *
      * @param sql 更新系SQL
      * @param paramsArray パラメータの２次元配列
@@ -195,21 +643,73 @@ public abstract class AbstractDatabase implements Closeable {
      * @throws SQLException
      */
     public int execute(String sql, Collection<Object[]> paramsArray) throws SQLException {
-        try (PreparedStatement statement = this.connection.prepareStatement(sql)) {
+        return this.execute(sql, paramsArray, null, this.batchSize);
+    }
+
+    /**
+     * プリペアードステートメントで更新系SQLを複数回実行する。<br>
+     * パラメータの入力先カラムのJDBC型を指定した場合は、JDBC型に適した型に値を変換して入力する。
+     * バッチの件数はこのオブジェクトの設定を変更せずに指定した値を使用する。
+     *
+     * @param sql 更新系SQL
+     * @param paramsArray パラメータの２次元配列
+     * @param columnTypes パラメータの入力先カラムのJDBC型(nullの場合は変換しない)
+     * @param batchSize バッチの件数(0以下の場合はバッチを使用しない)
+     * @return 更新レコード数
+     * @throws SQLException
+     */
+    int execute(String sql, Collection<Object[]> paramsArray, int[] columnTypes, int batchSize) throws SQLException {
+        ColumnBinder[] binders = null;
+        if (columnTypes != null) {
+            binders = ColumnBinder.find(columnTypes);
+        }
+        int parameterCount = 0;
+        for (Object[] params: paramsArray) {
+            parameterCount += params.length;
+        }
+        QueryTrace trace = new QueryTrace(sql, parameterCount);
+        PreparedStatement statement = this.prepareStatement(sql);
+        trace.prepared();
+        try {
             statement.setQueryTimeout(this.timeout);
             int updateCount = 0;
+            int numberOfBatched = 0;
             for (Object[] params: paramsArray) {
                 for (int i = 0; i < params.length; i++) {
-                    statement.setObject(i + 1, castSearchValue(params[i]));
+                    if (binders == null) {
+                        statement.setObject(i + 1, castSearchValue(params[i]));
+                    } else {
+                        binders[i].bind(statement, i + 1, columnTypes[i], params[i]);
+                    }
+                }
+                if (batchSize > 0) {
+                    statement.addBatch();
+                    numberOfBatched++;
+                    if (numberOfBatched >= batchSize) {
+                        updateCount += sumUpdateCounts(statement.executeBatch());
+                        numberOfBatched = 0;
+                    }
+                } else {
+                    updateCount += statement.executeUpdate();
                 }
-                updateCount += statement.executeUpdate();
             }
+            if (numberOfBatched > 0) {
+                updateCount += sumUpdateCounts(statement.executeBatch());
+            }
+            trace.setNumberOfRows(updateCount);
             return updateCount;
+        } catch (SQLException exception) {
+            trace.failed(exception);
+            throw exception;
+        } finally {
+            this.releaseStatement(statement);
+            trace.finish();
         }
     }
 
     /**
-     * プリペアードステートメントを内部で保持し何度も更新系SQLを実行する。
+     * プリペアードステートメントを内部で保持し何度も更新系SQLを実行する。<br>
+     * バッチの件数が設定されている場合はその件数ごとにまとめて送信し、残りはflushメソッドかcloseメソッドで送信する。
      *
      * @author hiro
      */
@@ -240,13 +740,49 @@ public abstract class AbstractDatabase implements Closeable {
             for (int i = 0; i < params.length; i++) {
                 this.statement.setObject(i + 1, castSearchValue(params[i]));
             }
+            if (this.database.batchSize > 0) {
+                this.statement.addBatch();
+                this.numberOfBatched++;
+                if (this.numberOfBatched >= this.database.batchSize) {
+                    this.flush();
+                }
+                return;
+            }
             this.updateCount += this.statement.executeUpdate();
         }
 
+        private int numberOfBatched = 0;
+
+        /**
+         * 送信されていないバッチを実行する。
+         *
+         * @throws SQLException
+         */
+        public void flush() throws SQLException {
+            if (this.numberOfBatched == 0) {
+                return;
+            }
+            int[] updateCounts = this.statement.executeBatch();
+            this.numberOfBatched = 0;
+            this.batchUpdateCounts.add(updateCounts);
+            this.updateCount += sumUpdateCounts(updateCounts);
+        }
+
+        private ArrayList<int[]> batchUpdateCounts = new ArrayList<>();
+
+        /**
+         * 今までに送信したバッチごとの更新結果を取得する。
+         *
+         * @return バッチごとの更新結果
+         */
+        public List<int[]> getBatchUpdateCounts() {
+            return this.batchUpdateCounts;
+        }
+
         private int updateCount = 0;
 
         /**
-         * 今までに更新した行数を取得する。
+         * 今までに更新した行数を取得する。送信されていないバッチは含まない。
          *
          * @return 更新された行数
          */
@@ -257,259 +793,1170 @@ public abstract class AbstractDatabase implements Closeable {
         @Override
         public void close() throws IOException {
             try {
-                this.statement.close();
-            } catch (Exception exception) {
-                // nop
+                this.flush();
+            } catch (SQLException exception) {
+                throw new IOException(exception);
+            } finally {
+                try {
+                    this.statement.close();
+                } catch (Exception exception) {
+                    // nop
+                }
+            }
+        }
+    }
+
+    /**
+     * SELECT結果の最初のレコード。最初のフィールドの値を取得する。
+     *
+     * @param sql
+     * @return 値
+     * @throws SQLException
+     * @throws DataNotFoundException
+     */
+    public String fetchOne(String sql) throws SQLException, DataNotFoundException {
+        return this.fetchOne(sql, new Object[] {});
+    }
+
+    /**
+     * プリペアードステートメントでSELECT結果の最初のレコード。最初のフィールドの値を取得する。
+     *
+     * @param sql
+     * @param params パラメータ
+     * @return 値
+     * @throws SQLException
+     * @throws DataNotFoundException
+     */
+    public String fetchOne(String sql, Object[] params) throws SQLException, DataNotFoundException {
+        QueryTrace trace = new QueryTrace(sql, params.length);
+        PreparedStatement statement = this.prepareStatement(sql);
+        trace.prepared();
+        try {
+            statement.setQueryTimeout(this.timeout);
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, castSearchValue(params[i]));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                trace.executed();
+                trace.setNumberOfRows(0);
+                if (resultSet.next()) {
+                    trace.setNumberOfRows(1);
+                    return resultSet.getObject(1).toString();
+                }
+            }
+        } catch (SQLException exception) {
+            trace.failed(exception);
+            throw exception;
+        } catch (NullPointerException exception) {
+            // nop
+        } catch (Exception exception) {
+            exception.printStackTrace();
+        } finally {
+            this.releaseStatement(statement);
+            trace.finish();
+        }
+        throw new DataNotFoundException();
+    }
+
+    /**
+     * SELECT結果の最初のレコードを連想配列で取得する。
+     *
+     * @param sql
+     * @return 連想配列
+     * @throws SQLException
+     * @throws DataNotFoundException
+     */
+    public RudeArray fetchRow(String sql) throws SQLException, DataNotFoundException {
+        return this.fetchRow(sql, new Object[] {});
+    }
+
+    /**
+     * プリペアードステートメントでSELECT結果の最初のレコードを連想配列で取得する。
+     *
+     * @param sql
+     * @param params パラメータ
+     * @return 連想配列
+     * @throws SQLException
+     * @throws DataNotFoundException
+     */
+    public RudeArray fetchRow(String sql, Object[] params) throws SQLException, DataNotFoundException {
+        QueryTrace trace = new QueryTrace(sql, params.length);
+        PreparedStatement statement = this.prepareStatement(sql);
+        trace.prepared();
+        try {
+            statement.setQueryTimeout(this.timeout);
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, castSearchValue(params[i]));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                trace.executed();
+                trace.setNumberOfRows(0);
+                if (resultSet.next()) {
+                    trace.setNumberOfRows(1);
+                    return new ResultShape(resultSet.getMetaData()).readRow(resultSet);
+                }
+                throw new DataNotFoundException();
+            }
+        } catch (SQLException exception) {
+            trace.failed(exception);
+            throw exception;
+        } finally {
+            this.releaseStatement(statement);
+            trace.finish();
+        }
+    }
+
+    /**
+     * SELECT結果のレコードを連想配列で取得する。
+     *
+     * @param sql
+     * @return 複数の連想配列
+     * @throws SQLException
+     */
+    public RudeArray[] fetchRows(String sql) throws SQLException {
+        return this.fetchRows(sql, new Object[] {});
+    }
+
+    /**
+     * プリペアードステートメントでSELECT結果のレコードを連想配列で取得する。
+     *
+     * @param sql
+     * @param params パラメータ
+     * @return 複数の連想配列
+     * @throws SQLException
+     */
+    public RudeArray[] fetchRows(String sql, Object[] params) throws SQLException {
+        ArrayList<RudeArray> rows = new ArrayList<>();
+        this.fetchRowsEach(sql, params, new RowProcessor() {
+
+            @Override
+            public boolean process(RudeArray row) {
+                rows.add(row);
+                return true;
+            }
+        });
+        return rows.toArray(new RudeArray[rows.size()]);
+    }
+
+    /**
+     * SELECT結果のレコードを1行ずつ処理するインターフェース。
+     *
+     * @author hiro
+     */
+    public interface RowProcessor {
+
+        /**
+         * 取得したレコードを処理する。
+         *
+         * @param row レコードの連想配列
+         * @return 次のレコードの処理を続ける場合はtrue
+         * @throws Exception
+         */
+        public boolean process(RudeArray row) throws Exception;
+    }
+
+    private int fetchSize = 0;
+
+    /**
+     * レコード取得時にドライバーが一度に読み込む行数を取得する。
+     *
+     * @return 行数(0の場合はドライバーの既定値)
+     */
+    public int getFetchSize() {
+        return this.fetchSize;
+    }
+
+    /**
+     * レコード取得時にドライバーが一度に読み込む行数を設定する。
+     *
+     * @param fetchSize 行数(0の場合はドライバーの既定値)
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * SELECT結果のレコードを全件保持せずに1行ずつ連想配列で処理する。<br>
+     * 処理が終了するか中断された時点でステートメントと結果セットは閉じられる。
+     *
+     * @param sql
+     * @param processor レコードを処理するインスタンス
+     * @return 処理したレコード数
+     * @throws SQLException
+     */
+    public long fetchRowsEach(String sql, RowProcessor processor) throws SQLException {
+        return this.fetchRowsEach(sql, new Object[] {}, processor);
+    }
+
+    /**
+     * プリペアードステートメントでSELECT結果のレコードを全件保持せずに1行ずつ連想配列で処理する。<br>
+     * 処理が終了するか中断された時点でステートメントと結果セットは閉じられる。
+     *
+     * @param sql
+     * @param params パラメータ
+     * @param processor レコードを処理するインスタンス
+     * @return 処理したレコード数
+     * @throws SQLException
+     */
+    public long fetchRowsEach(String sql, Object[] params, RowProcessor processor) throws SQLException {
+        return this.fetchEachResultRow(sql, params, new ResultRowHandler() {
+
+            @Override
+            public boolean handle(ResultSet resultSet, ResultShape shape) throws Exception {
+                return processor.process(shape.readRow(resultSet));
+            }
+        });
+    }
+
+    /**
+     * プリペアードステートメントでSELECT結果のレコードを連想配列で取得する。<br>
+     * 指定したカラムについては、TimestampやBigDecimalを変換していない値もレコードごとの配列で取得する。
+     *
+     * @param sql
+     * @param params パラメータ
+     * @param rawColumns 変換していない値を取得するカラム名
+     * @param rawValues 変換していない値の配列をレコードの順に追加するリスト
+     * @return 複数の連想配列
+     * @throws SQLException
+     */
+    RudeArray[] fetchRows(String sql, Object[] params, String[] rawColumns, List<Object[]> rawValues) throws SQLException {
+        ArrayList<RudeArray> rows = new ArrayList<>();
+        this.fetchEachResultRow(sql, params, new ResultRowHandler() {
+
+            @Override
+            public boolean handle(ResultSet resultSet, ResultShape shape) throws Exception {
+                rows.add(shape.readRow(resultSet));
+                Object[] values = new Object[rawColumns.length];
+                for (int i = 0; i < rawColumns.length; i++) {
+                    values[i] = resultSet.getObject(rawColumns[i]);
+                }
+                rawValues.add(values);
+                return true;
+            }
+        });
+        return rows.toArray(new RudeArray[rows.size()]);
+    }
+
+    /**
+     * SELECT結果のレコードを配列で保持するTupleRowsで取得する。<br>
+     * 連想配列をレコードごとに作成しないため大量のレコードを取得する場合のメモリ使用量が少ない。
+     *
+     * @param sql
+     * @return 検索結果
+     * @throws SQLException
+     */
+    public TupleRows fetchTupleRows(String sql) throws SQLException {
+        return this.fetchTupleRows(sql, new Object[] {});
+    }
+
+    /**
+     * プリペアードステートメントでSELECT結果のレコードを配列で保持するTupleRowsで取得する。<br>
+     * 連想配列をレコードごとに作成しないため大量のレコードを取得する場合のメモリ使用量が少ない。
+     *
+     * @param sql
+     * @param params パラメータ
+     * @return 検索結果
+     * @throws SQLException
+     */
+    public TupleRows fetchTupleRows(String sql, Object[] params) throws SQLException {
+        ArrayList<Object[]> tuples = new ArrayList<>();
+        ResultShape[] shapes = new ResultShape[1];
+        this.fetchEachResultRow(sql, params, new ResultRowHandler() {
+
+            @Override
+            public void begin(ResultShape shape) {
+                shapes[0] = shape;
+            }
+
+            @Override
+            public boolean handle(ResultSet resultSet, ResultShape shape) throws Exception {
+                tuples.add(shape.readValues(resultSet));
+                return true;
+            }
+        });
+        return new TupleRows(shapes[0].getColumnNames(), tuples);
+    }
+
+    /**
+     * 結果セットの行を処理するクラス。
+     *
+     * @author hiro
+     */
+    private static abstract class ResultRowHandler {
+
+        /**
+         * 結果セットの最初の行を処理する前に、行の有無に関係なく1回呼び出される。
+         *
+         * @param shape 結果セットのカラム構成
+         * @throws Exception
+         */
+        public void begin(ResultShape shape) throws Exception {
+        }
+
+        /**
+         * 結果セットの現在の行を処理する。
+         *
+         * @param resultSet 結果セット
+         * @param shape 結果セットのカラム構成
+         * @return 次の行の処理を続ける場合はtrue
+         * @throws Exception
+         */
+        public abstract boolean handle(ResultSet resultSet, ResultShape shape) throws Exception;
+    }
+
+    /**
+     * プリペアードステートメントでSELECTを実行して結果セットを1行ずつ処理する。
+     *
+     * @param sql
+     * @param params パラメータ
+     * @param handler 結果セットの行を処理するインスタンス
+     * @return 処理した行数
+     * @throws SQLException
+     */
+    private long fetchEachResultRow(String sql, Object[] params, ResultRowHandler handler) throws SQLException {
+        QueryTrace trace = new QueryTrace(sql, params.length);
+        PreparedStatement statement = this.prepareStatement(sql);
+        trace.prepared();
+        long numberOfRows = 0;
+        try {
+            statement.setQueryTimeout(this.timeout);
+            statement.setFetchSize(Math.max(this.fetchSize, 0));
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, castSearchValue(params[i]));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                trace.executed();
+                ResultShape shape = new ResultShape(resultSet.getMetaData());
+                try {
+                    handler.begin(shape);
+                    while (resultSet.next()) {
+                        numberOfRows++;
+                        if (handler.handle(resultSet, shape) == false) {
+                            break;
+                        }
+                    }
+                } catch (SQLException exception) {
+                    throw exception;
+                } catch (Exception exception) {
+                    throw new SQLException(exception);
+                }
+                return numberOfRows;
+            }
+        } catch (SQLException exception) {
+            trace.failed(exception);
+            throw exception;
+        } finally {
+            this.releaseStatement(statement);
+            trace.setNumberOfRows(numberOfRows);
+            trace.finish();
+        }
+    }
+
+    /**
+     * 検索に使用するオブジェクトをデータベースで使用できる適当な型にキャストする。
+     *
+     * @param value 元のオブジェクト
+     * @return キャストしたオブジェクト
+     */
+    private static Object castSearchValue(Object value) {
+        if (value == null) {
+            return value;
+        }
+        switch (value.getClass().getName()) {
+        case "java.util.Date":
+            java.util.Date date = (java.util.Date) value;
+            return new Timestamp(date.getTime());
+        default:
+            return value;
+        }
+    }
+
+    /**
+     * テーブルのレコード数を取得する。
+     *
+     * @param tableName テーブル名
+     * @return レコード数
+     * @throws SQLException
+     * @throws DataNotFoundException 
+     */
+    public long count(String tableName) throws SQLException, DataNotFoundException {
+        return StringConverter.stringToLong(this.fetchOne(StringConverter.join("SELECT COUNT(*) FROM ", tableName, ";")));
+    }
+
+    private HashMap<String, ResultShape> tableShapeCache = new HashMap<>();
+
+    /**
+     * テーブルのカラム構成を取得する。取得したカラム構成はclearMetadataCacheメソッドかcloseメソッドが呼ばれるまでキャッシュされる。
+     *
+     * @param tableName テーブル名
+     * @return カラム構成
+     * @throws SQLException
+     */
+    ResultShape findTableShape(String tableName) throws SQLException {
+        ResultShape shape = this.tableShapeCache.get(tableName);
+        if (shape == null) {
+            try (PreparedStatement statement = this.connection.prepareStatement(StringConverter.join("SELECT * FROM ", tableName, " WHERE 1 = 0;"))) {
+                statement.setQueryTimeout(this.timeout);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    shape = new ResultShape(resultSet.getMetaData());
+                }
+            }
+            this.tableShapeCache.put(tableName, shape);
+        }
+        return shape;
+    }
+
+    /**
+     * キャッシュしているテーブルのカラム構成を破棄する。テーブル定義を変更した場合に使用する。
+     */
+    public void clearMetadataCache() {
+        this.tableShapeCache.clear();
+    }
+
+    /**
+     * 連想配列の情報をテーブルに追加する。<br>
+     * テーブルに存在するカラムのみを対象としたINSERT文をカラムの組み合わせごとに作成する。
+     *
+     * @param values 連想配列
+     * @param tableName テーブル名
+     * @throws SQLException
+     */
+    public void insert(RudeArray values, String tableName) throws SQLException {
+        ResultShape shape = this.findTableShape(tableName);
+        String[] columnNames = shape.getColumnNames();
+        int[] columnTypes = shape.getColumnTypes();
+        int[] targetIndexes = new int[columnNames.length];
+        int numberOfTargets = 0;
+        for (int i = 0; i < columnNames.length; i++) {
+            if (values.containsKey(columnNames[i])) {
+                targetIndexes[numberOfTargets] = i;
+                numberOfTargets++;
+            }
+        }
+        if (numberOfTargets == 0) {
+            try {
+                this.insertByResultSet(values, tableName);
+            } finally {
+                this.invalidateQueryResultCache(tableName);
+            }
+            return;
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO ");
+        sql.append(tableName);
+        sql.append(" (");
+        for (int i = 0; i < numberOfTargets; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(columnNames[targetIndexes[i]]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < numberOfTargets; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("?");
+        }
+        sql.append(");");
+        QueryTrace trace = new QueryTrace(sql.toString(), numberOfTargets);
+        PreparedStatement statement = this.prepareStatement(sql.toString());
+        trace.prepared();
+        try {
+            statement.setQueryTimeout(this.timeout);
+            ColumnBinder[] binders = shape.getBinders();
+            for (int i = 0; i < numberOfTargets; i++) {
+                int index = targetIndexes[i];
+                binders[index].bind(statement, i + 1, columnTypes[index], values.get(columnNames[index]));
+            }
+            trace.setNumberOfRows(statement.executeUpdate());
+        } catch (SQLException exception) {
+            trace.failed(exception);
+            throw exception;
+        } finally {
+            this.releaseStatement(statement);
+            trace.finish();
+            this.invalidateQueryResultCache(tableName);
+        }
+    }
+
+    /**
+     * 更新可能なResultSetを使用して連想配列の情報をテーブルに追加する。
+     *
+     * @param values 連想配列
+     * @param tableName テーブル名
+     * @throws SQLException
+     */
+    private void insertByResultSet(RudeArray values, String tableName) throws SQLException {
+        try (Statement statement = this.connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_UPDATABLE)) {
+            statement.setQueryTimeout(this.timeout);
+            statement.setFetchSize(1);
+            try (ResultSet resultSet = statement.executeQuery(StringConverter.join("SELECT * FROM ", tableName, ";"))) {
+                ResultShape shape = new ResultShape(resultSet.getMetaData());
+                String[] columnNames = shape.getColumnNames();
+                ColumnBinder[] binders = shape.getBinders();
+                resultSet.moveToInsertRow();
+                for (int i = 0; i < columnNames.length; i++) {
+                    if (values.containsKey(columnNames[i])) {
+                        binders[i].update(resultSet, i + 1, values.get(columnNames[i]));
+                    }
+                }
+                resultSet.insertRow();
+            }
+        }
+    }
+
+    private int bulkInsertChunkSize = 500;
+
+    /**
+     * 複数行のINSERT文1つにまとめる最大行数を取得する。
+     *
+     * @return 最大行数
+     */
+    public int getBulkInsertChunkSize() {
+        return this.bulkInsertChunkSize;
+    }
+
+    /**
+     * 複数行のINSERT文1つにまとめる最大行数を設定する。初期値は500。<br>
+     * パラメータの数がgetMaximumParameterCountメソッドの値を超える場合はさらに分割される。
+     *
+     * @param bulkInsertChunkSize 最大行数
+     */
+    public void setBulkInsertChunkSize(int bulkInsertChunkSize) {
+        this.bulkInsertChunkSize = Math.max(bulkInsertChunkSize, 1);
+    }
+
+    /**
+     * 1つのSQLで使用できるパラメータの最大数を取得する。
+     *
+     * @return 最大数
+     */
+    public int getMaximumParameterCount() {
+        return 999;
+    }
+
+    /**
+     * トランザクションが開始されているかどうかを取得する。
+     *
+     * @return 結果
+     */
+    public boolean isTransactionActive() {
+        return this.isAutoCommit() == false;
+    }
+
+    /**
+     * 一括処理のためにトランザクションを開始する。
+     *
+     * @throws SQLException
+     */
+    protected void beginImplicitTransaction() throws SQLException {
+        this.setAutoCommit(false);
+    }
+
+    /**
+     * beginImplicitTransactionメソッドで開始したトランザクションを終了する。
+     *
+     * @param isCommit コミットする場合はtrue、ロールバックする場合はfalse
+     * @throws SQLException
+     */
+    protected void endImplicitTransaction(boolean isCommit) throws SQLException {
+        try {
+            if (isCommit) {
+                this.commit();
+            } else {
+                this.rollback();
+            }
+        } finally {
+            this.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * トランザクション内で実行する処理のインターフェース。
+     *
+     * @author hiro
+     *
+     * @param <T> 処理結果の型
+     */
+    public interface TransactionProcessor<T> {
+
+        /**
+         * トランザクション内で処理を実行する。再試行される場合があるため、処理は何度実行しても同じ結果になる必要がある。
+         *
+         * @return 処理結果
+         * @throws Exception
+         */
+        public T process() throws Exception;
+    }
+
+    private int maximumRetryCount = 3;
+
+    /**
+     * runInTransactionメソッドで再試行する最大回数を取得する。
+     *
+     * @return 最大回数
+     */
+    public int getMaximumRetryCount() {
+        return this.maximumRetryCount;
+    }
+
+    /**
+     * runInTransactionメソッドで再試行する最大回数を設定する。初期値は3。
+     *
+     * @param maximumRetryCount 最大回数(0の場合は再試行しない)
+     */
+    public void setMaximumRetryCount(int maximumRetryCount) {
+        this.maximumRetryCount = Math.max(maximumRetryCount, 0);
+    }
+
+    private long initialRetryDelayMillis = 10;
+
+    /**
+     * 1回目の再試行までの待機時間を取得する。
+     *
+     * @return 待機時間(ミリ秒)
+     */
+    public long getInitialRetryDelayMillis() {
+        return this.initialRetryDelayMillis;
+    }
+
+    /**
+     * 1回目の再試行までの待機時間を設定する。初期値は10ミリ秒。<br>
+     * 待機時間は再試行ごとに2倍になり、実際にはその半分から全体までの範囲の無作為な時間を待機する。
+     *
+     * @param initialRetryDelayMillis 待機時間(ミリ秒)
+     */
+    public void setInitialRetryDelayMillis(long initialRetryDelayMillis) {
+        this.initialRetryDelayMillis = Math.max(initialRetryDelayMillis, 1);
+    }
+
+    private long maximumRetryDelayMillis = 1000;
+
+    /**
+     * 再試行までの待機時間の上限を取得する。
+     *
+     * @return 待機時間(ミリ秒)
+     */
+    public long getMaximumRetryDelayMillis() {
+        return this.maximumRetryDelayMillis;
+    }
+
+    /**
+     * 再試行までの待機時間の上限を設定する。初期値は1000ミリ秒。
+     *
+     * @param maximumRetryDelayMillis 待機時間(ミリ秒)
+     */
+    public void setMaximumRetryDelayMillis(long maximumRetryDelayMillis) {
+        this.maximumRetryDelayMillis = Math.max(maximumRetryDelayMillis, 1);
+    }
+
+    private long numberOfRetries = 0;
+
+    /**
+     * runInTransactionメソッドでトランザクションを再試行した回数を取得する。
+     *
+     * @return 回数
+     */
+    public long getNumberOfRetries() {
+        return this.numberOfRetries;
+    }
+
+    private long numberOfRetryFailures = 0;
+
+    /**
+     * runInTransactionメソッドで最大回数まで再試行しても成功しなかった回数を取得する。
+     *
+     * @return 回数
+     */
+    public long getNumberOfRetryFailures() {
+        return this.numberOfRetryFailures;
+    }
+
+    private long totalRetryDelayMillis = 0;
+
+    /**
+     * runInTransactionメソッドで再試行のために待機した時間の合計を取得する。
+     *
+     * @return 待機時間(ミリ秒)
+     */
+    public long getTotalRetryDelayMillis() {
+        return this.totalRetryDelayMillis;
+    }
+
+    /**
+     * 再試行の回数などの統計情報を初期化する。
+     */
+    public void resetRetryStatistics() {
+        this.numberOfRetries = 0;
+        this.numberOfRetryFailures = 0;
+        this.totalRetryDelayMillis = 0;
+    }
+
+    /**
+     * トランザクション内で処理を実行する。分離レベルはドライバーの既定値のまま変更しない。
+     *
+     * @param <T> 処理結果の型
+     * @param processor 処理
+     * @return 処理結果
+     * @throws SQLException
+     * @see #runInTransaction(int, TransactionProcessor)
+     */
+    public <T> T runInTransaction(TransactionProcessor<T> processor) throws SQLException {
+        return this.runInTransaction(Connection.TRANSACTION_NONE, processor);
+    }
+
+    /**
+     * トランザクション内で処理を実行する。処理が正常に終了した場合はコミットし、例外が発生した場合はロールバックする。<br>
+     * シリアライズ失敗やデッドロックなどの再試行可能な例外が発生した場合は、待機時間を指数的に増やしながらgetMaximumRetryCountメソッドの回数まで処理全体を再試行する。<br>
+     * すでにトランザクションが開始されている場合はセーブポイントを作成して実行し、例外が発生した場合はセーブポイントまでロールバックして例外を呼び出し元に返す。
+     * この場合は外側のトランザクションごと再試行する必要があるため再試行しない。
+     *
+     * @param <T> 処理結果の型
+     * @param isolationLevel Connection.TRANSACTION_SERIALIZABLEなどの分離レベル(Connection.TRANSACTION_NONEの場合は変更しない)
+     * @param processor 処理
+     * @return 処理結果
+     * @throws SQLException
+     */
+    public <T> T runInTransaction(int isolationLevel, TransactionProcessor<T> processor) throws SQLException {
+        if (this.isTransactionActive()) {
+            return this.runInSavepoint(processor);
+        }
+        int previousIsolationLevel = this.connection.getTransactionIsolation();
+        boolean isIsolationLevelChanged = isolationLevel != Connection.TRANSACTION_NONE && isolationLevel != previousIsolationLevel;
+        if (isIsolationLevelChanged) {
+            this.connection.setTransactionIsolation(isolationLevel);
+        }
+        try {
+            int numberOfRetries = 0;
+            while (true) {
+                try {
+                    return this.runInNewTransaction(processor);
+                } catch (SQLException exception) {
+                    if (this.isRetryableException(exception) == false) {
+                        throw exception;
+                    }
+                    if (numberOfRetries >= this.maximumRetryCount) {
+                        this.numberOfRetryFailures++;
+                        throw exception;
+                    }
+                    long delay = this.calculateRetryDelay(numberOfRetries);
+                    numberOfRetries++;
+                    this.numberOfRetries++;
+                    this.totalRetryDelayMillis += delay;
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException interruptedException) {
+                        Thread.currentThread().interrupt();
+                        throw exception;
+                    }
+                }
+            }
+        } finally {
+            if (isIsolationLevelChanged) {
+                this.connection.setTransactionIsolation(previousIsolationLevel);
             }
         }
     }
 
     /**
-     * SELECT結果の最初のレコード。最初のフィールドの値を取得する。
+     * トランザクションを開始して処理を実行し、コミットまたはロールバックする。
      *
-     * @param sql
-     * @return 値
+     * @param <T> 処理結果の型
+     * @param processor 処理
+     * @return 処理結果
      * @throws SQLException
-     * @throws DataNotFoundException
      */
-    public String fetchOne(String sql) throws SQLException, DataNotFoundException {
-        try (Statement statement = this.connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
-            statement.setQueryTimeout(this.timeout);
-            try (ResultSet resultSet = statement.executeQuery(sql)) {
-                if (resultSet.next()) {
-                    return resultSet.getObject(1).toString();
+    private <T> T runInNewTransaction(TransactionProcessor<T> processor) throws SQLException {
+        this.beginImplicitTransaction();
+        T result;
+        try {
+            result = processor.process();
+        } catch (Exception exception) {
+            SQLException sqlException = toSQLException(exception);
+            try {
+                this.endImplicitTransaction(false);
+            } catch (SQLException rollbackException) {
+                sqlException.addSuppressed(rollbackException);
+            }
+            throw sqlException;
+        }
+        try {
+            this.endImplicitTransaction(true);
+        } catch (SQLException exception) {
+            if (this.isTransactionActive()) {
+                try {
+                    this.endImplicitTransaction(false);
+                } catch (SQLException rollbackException) {
+                    exception.addSuppressed(rollbackException);
                 }
-                throw new DataNotFoundException();
             }
+            throw exception;
         }
+        return result;
     }
 
+    private int savepointDepth = 0;
+
     /**
-     * プリペアードステートメントでSELECT結果の最初のレコード。最初のフィールドの値を取得する。
+     * セーブポイントを作成して処理を実行し、例外が発生した場合はセーブポイントまでロールバックする。
      *
-     * @param sql
-     * @param params パラメータ
-     * @return 値
+     * @param <T> 処理結果の型
+     * @param processor 処理
+     * @return 処理結果
      * @throws SQLException
-     * @throws DataNotFoundException
      */
-    public String fetchOne(String sql, Object[] params) throws SQLException, DataNotFoundException {
-        try (PreparedStatement statement = this.connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
-            statement.setQueryTimeout(this.timeout);
-            for (int i = 0; i < params.length; i++) {
-                statement.setObject(i + 1, castSearchValue(params[i]));
-            }
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    return resultSet.getObject(1).toString();
+    private <T> T runInSavepoint(TransactionProcessor<T> processor) throws SQLException {
+        this.savepointDepth++;
+        String savepointName = StringConverter.join("savepoint_", this.savepointDepth);
+        try {
+            this.execute(StringConverter.join("SAVEPOINT ", savepointName, ";"));
+            try {
+                T result = processor.process();
+                this.execute(StringConverter.join("RELEASE SAVEPOINT ", savepointName, ";"));
+                return result;
+            } catch (Exception exception) {
+                SQLException sqlException = toSQLException(exception);
+                try {
+                    this.execute(StringConverter.join("ROLLBACK TO SAVEPOINT ", savepointName, ";"));
+                    this.execute(StringConverter.join("RELEASE SAVEPOINT ", savepointName, ";"));
+                } catch (SQLException rollbackException) {
+                    sqlException.addSuppressed(rollbackException);
                 }
+                throw sqlException;
             }
-        } catch (SQLException exception) {
-            throw exception;
-        } catch (NullPointerException exception) {
-            // nop
-        } catch (Exception exception) {
-            exception.printStackTrace();
+        } finally {
+            this.savepointDepth--;
         }
-        throw new DataNotFoundException();
     }
 
     /**
-     * SELECT結果の最初のレコードを連想配列で取得する。
+     * 例外をSQLExceptionに変換する。
      *
-     * @param sql
-     * @return 連想配列
-     * @throws SQLException
-     * @throws DataNotFoundException
+     * @param exception 例外
+     * @return SQLException
      */
-    public RudeArray fetchRow(String sql) throws SQLException, DataNotFoundException {
-        try (Statement statement = this.connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
-            statement.setQueryTimeout(this.timeout);
-            try (ResultSet resultSet = statement.executeQuery(sql)) {
-                if (resultSet.next()) {
-                    RudeArray row = new RudeArray();
-                    ResultSetMetaData meta = resultSet.getMetaData();
-                    for (int i = 1; i <= meta.getColumnCount(); i++) {
-                        row.put(meta.getColumnName(i), castDatabaseValue(resultSet.getObject(i)));
-                    }
-                    return row;
-                }
-                throw new DataNotFoundException();
-            }
+    private static SQLException toSQLException(Exception exception) {
+        if (exception instanceof SQLException) {
+            return (SQLException) exception;
         }
+        return new SQLException(exception);
     }
 
     /**
-     * プリペアードステートメントでSELECT結果の最初のレコードを連想配列で取得する。
+     * 再試行までの待機時間を計算する。
      *
-     * @param sql
-     * @param params パラメータ
-     * @return 連想配列
-     * @throws SQLException
-     * @throws DataNotFoundException
+     * @param numberOfRetries これまでに再試行した回数
+     * @return 待機時間(ミリ秒)
      */
-    public RudeArray fetchRow(String sql, Object[] params) throws SQLException, DataNotFoundException {
-        try (PreparedStatement statement = this.connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
-            statement.setQueryTimeout(this.timeout);
-            for (int i = 0; i < params.length; i++) {
-                statement.setObject(i + 1, castSearchValue(params[i]));
-            }
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    RudeArray row = new RudeArray();
-                    ResultSetMetaData meta = resultSet.getMetaData();
-                    for (int i = 1; i <= meta.getColumnCount(); i++) {
-                        row.put(meta.getColumnName(i), castDatabaseValue(resultSet.getObject(i)));
-                    }
-                    return row;
-                }
-                throw new DataNotFoundException();
+    private long calculateRetryDelay(int numberOfRetries) {
+        long delay = this.initialRetryDelayMillis << Math.min(numberOfRetries, 30);
+        if (delay <= 0 || delay > this.maximumRetryDelayMillis) {
+            delay = this.maximumRetryDelayMillis;
+        }
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay - delay / 2 + 1);
+    }
+
+    /**
+     * 例外またはその原因に再試行可能な例外が含まれるかどうかを判定する。
+     *
+     * @param exception 例外
+     * @return 再試行可能な場合はtrue
+     */
+    private boolean isRetryableException(SQLException exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && this.isRetryableError((SQLException) cause)) {
+                return true;
             }
-       }
+        }
+        return false;
     }
 
     /**
-     * SELECT結果のレコードを連想配列で取得する。
+     * トランザクションを再試行すれば成功する可能性がある例外かどうかを判定する。<br>
+     * SQLTransactionRollbackExceptionとSQLSTATEが40001(シリアライズ失敗)の例外を再試行可能とする。
+     * データベースごとのエラーコードはサブクラスでオーバーライドして判定する。
      *
-     * @param sql
-     * @return 複数の連想配列
+     * @param exception 例外
+     * @return 再試行可能な場合はtrue
+     */
+    protected boolean isRetryableError(SQLException exception) {
+        return exception instanceof SQLTransactionRollbackException || "40001".equals(exception.getSQLState());
+    }
+
+    /**
+     * 複数の連想配列の情報をテーブルに一括で追加する。<br>
+     * テーブルに存在するカラムの組み合わせが同じ連続した行をまとめて、複数行のINSERT文で追加する。
+     * トランザクションが開始されていない場合は1つのトランザクション内で実行される。
+     *
+     * @param rows 連想配列
+     * @param tableName テーブル名
+     * @return 追加したレコード数
      * @throws SQLException
      */
-    public RudeArray[] fetchRows(String sql) throws SQLException {
-        try (Statement statement = this.connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
-            statement.setQueryTimeout(this.timeout);
-            try (ResultSet resultSet = statement.executeQuery(sql)) {
-                RudeArray rows = new RudeArray();
-                while (resultSet.next()) {
-                    RudeArray row = new RudeArray();
-                    ResultSetMetaData meta = resultSet.getMetaData();
-                    for (int i = 1; i <= meta.getColumnCount(); i++) {
-                        row.put(meta.getColumnName(i), castDatabaseValue(resultSet.getObject(i)));
-                    }
-                    rows.add(row);
-                }
-                return rows.getValuesAtRudeArray();
-            }
+    public int insert(Collection<RudeArray> rows, String tableName) throws SQLException {
+        if (rows.size() == 0) {
+            return 0;
+        }
+        if (this.isTransactionActive()) {
+            return this.insertGroups(rows, tableName);
+        }
+        this.beginImplicitTransaction();
+        boolean isSucceeded = false;
+        try {
+            int numberOfRows = this.insertGroups(rows, tableName);
+            isSucceeded = true;
+            return numberOfRows;
+        } finally {
+            this.endImplicitTransaction(isSucceeded);
         }
     }
 
     /**
-     * プリペアードステートメントでSELECT結果のレコードを連想配列で取得する。
+     * テーブルに存在するカラムの組み合わせごとに行をまとめて一括で追加する。
      *
-     * @param sql
-     * @param params パラメータ
-     * @return 複数の連想配列
+     * @param rows 連想配列
+     * @param tableName テーブル名
+     * @return 追加したレコード数
      * @throws SQLException
      */
-    public RudeArray[] fetchRows(String sql, Object[] params) throws SQLException {
-        try (PreparedStatement statement = this.connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
-            statement.setQueryTimeout(this.timeout);
-            for (int i = 0; i < params.length; i++) {
-                statement.setObject(i + 1, castSearchValue(params[i]));
+    private int insertGroups(Collection<RudeArray> rows, String tableName) throws SQLException {
+        this.invalidateQueryResultCache(tableName);
+        ResultShape shape = this.findTableShape(tableName);
+        String[] columnNames = shape.getColumnNames();
+        int[] columnTypes = shape.getColumnTypes();
+        int numberOfRows = 0;
+        boolean[] group = null;
+        ArrayList<RudeArray> groupRows = new ArrayList<>();
+        for (RudeArray row: rows) {
+            boolean[] targets = new boolean[columnNames.length];
+            boolean isTargetExists = false;
+            for (int i = 0; i < columnNames.length; i++) {
+                targets[i] = row.containsKey(columnNames[i]);
+                isTargetExists |= targets[i];
             }
-            try (ResultSet resultSet = statement.executeQuery()) {
-                RudeArray rows = new RudeArray();
-                while (resultSet.next()) {
-                    RudeArray row = new RudeArray();
-                    ResultSetMetaData meta = resultSet.getMetaData();
-                    for (int i = 1; i <= meta.getColumnCount(); i++) {
-                        row.put(meta.getColumnName(i), castDatabaseValue(resultSet.getObject(i)));
-                    }
-                    rows.add(row);
-                }
-                return rows.getValuesAtRudeArray();
+            if (group != null && Arrays.equals(group, targets) == false) {
+                numberOfRows += this.insertGroup(tableName, columnNames, columnTypes, group, groupRows);
+                groupRows.clear();
+                group = null;
+            }
+            if (isTargetExists == false) {
+                this.insertByResultSet(row, tableName);
+                numberOfRows++;
+                continue;
             }
+            group = targets;
+            groupRows.add(row);
         }
+        if (group != null) {
+            numberOfRows += this.insertGroup(tableName, columnNames, columnTypes, group, groupRows);
+        }
+        return numberOfRows;
     }
-    
+
     /**
-     * 検索に使用するオブジェクトをデータベースで使用できる適当な型にキャストする。
+     * カラムの組み合わせが同じ行を一括で追加する。
      *
-     * @param value 元のオブジェクト
-     * @return キャストしたオブジェクト
+     * @param tableName テーブル名
+     * @param columnNames テーブルのカラム名
+     * @param columnTypes テーブルのカラムのJDBC型
+     * @param targets 追加対象のカラム
+     * @param rows 連想配列
+     * @return 追加したレコード数
+     * @throws SQLException
      */
-    private static Object castSearchValue(Object value) {
-        if (value == null) {
-            return value;
+    private int insertGroup(String tableName, String[] columnNames, int[] columnTypes, boolean[] targets, List<RudeArray> rows) throws SQLException {
+        ArrayList<String> targetNames = new ArrayList<>();
+        ArrayList<Integer> targetTypes = new ArrayList<>();
+        for (int i = 0; i < columnNames.length; i++) {
+            if (targets[i]) {
+                targetNames.add(columnNames[i]);
+                targetTypes.add(columnTypes[i]);
+            }
         }
-        switch (value.getClass().getName()) {
-        case "java.util.Date":
-            java.util.Date date = (java.util.Date) value;
-            return new Timestamp(date.getTime());
-        default:
-            return value;
+        int[] types = new int[targetTypes.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = targetTypes.get(i);
         }
+        return this.executeBulkInsert(tableName, targetNames.toArray(new String[targetNames.size()]), types, rows);
     }
 
     /**
-     * データベースから取得した値をjavaで使用する適当な型にキャストする。
+     * カラムの組み合わせが同じ行を複数行のINSERT文で追加する。<br>
+     * 1つのINSERT文の行数はgetBulkInsertChunkSizeメソッドとgetMaximumParameterCountメソッドの値で制限される。
      *
-     * @param value 元のオブジェクト
-     * @return キャストしたオブジェクト
+     * @param tableName テーブル名
+     * @param columnNames 追加対象のカラム名
+     * @param columnTypes 追加対象のカラムのJDBC型
+     * @param rows 連想配列
+     * @return 追加したレコード数
+     * @throws SQLException
      */
-    private static Object castDatabaseValue(Object value) {
-        if (value == null) {
-            return value;
+    protected int executeBulkInsert(String tableName, String[] columnNames, int[] columnTypes, List<RudeArray> rows) throws SQLException {
+        int chunkSize = Math.max(Math.min(this.bulkInsertChunkSize, this.getMaximumParameterCount() / columnNames.length), 1);
+        ColumnBinder[] binders = ColumnBinder.find(columnTypes);
+        StringBuilder header = new StringBuilder("INSERT INTO ");
+        header.append(tableName);
+        header.append(" (");
+        StringBuilder placeholder = new StringBuilder("(");
+        for (int i = 0; i < columnNames.length; i++) {
+            if (i > 0) {
+                header.append(", ");
+                placeholder.append(", ");
+            }
+            header.append(columnNames[i]);
+            placeholder.append("?");
         }
-        switch (value.getClass().getName()) {
-        case "java.sql.Timestamp":
-            Timestamp timestamp = (Timestamp) value;
-            return new Date(timestamp.getTime());
-        case "java.math.BigDecimal":
-            BigDecimal bigDecimal = (BigDecimal) value;
-            return bigDecimal.doubleValue();
-        default:
-            return value;
+        header.append(") VALUES ");
+        placeholder.append(")");
+        int numberOfRows = 0;
+        for (int start = 0; start < rows.size(); start += chunkSize) {
+            int end = Math.min(start + chunkSize, rows.size());
+            StringBuilder sql = new StringBuilder(header);
+            for (int rowIndex = start; rowIndex < end; rowIndex++) {
+                if (rowIndex > start) {
+                    sql.append(", ");
+                }
+                sql.append(placeholder);
+            }
+            sql.append(";");
+            QueryTrace trace = new QueryTrace(sql.toString(), (end - start) * columnNames.length);
+            PreparedStatement statement = this.prepareStatement(sql.toString());
+            trace.prepared();
+            try {
+                statement.setQueryTimeout(this.timeout);
+                int parameterIndex = 1;
+                for (int rowIndex = start; rowIndex < end; rowIndex++) {
+                    RudeArray row = rows.get(rowIndex);
+                    for (int i = 0; i < columnNames.length; i++) {
+                        binders[i].bind(statement, parameterIndex, columnTypes[i], row.get(columnNames[i]));
+                        parameterIndex++;
+                    }
+                }
+                trace.setNumberOfRows(statement.executeUpdate());
+                numberOfRows += end - start;
+            } catch (SQLException exception) {
+                trace.failed(exception);
+                throw exception;
+            } finally {
+                this.releaseStatement(statement);
+                trace.finish();
+            }
         }
+        return numberOfRows;
     }
 
+    private boolean isUpdateWithCursor = false;
+
     /**
-     * テーブルのレコード数を取得する。
+     * update(RudeArray, String, WhereSet)メソッドが更新可能なResultSetを使用して1行ずつ更新するかどうかを取得する。
      *
-     * @param tableName テーブル名
-     * @return レコード数
-     * @throws SQLException
-     * @throws DataNotFoundException 
+     * @return 結果
      */
-    public long count(String tableName) throws SQLException, DataNotFoundException {
-        return StringConverter.stringToLong(this.fetchOne(StringConverter.join("SELECT COUNT(*) FROM ", tableName, ";")));
+    public boolean isUpdateWithCursor() {
+        return this.isUpdateWithCursor;
+    }
+
+    /**
+     * update(RudeArray, String, WhereSet)メソッドが更新可能なResultSetを使用して1行ずつ更新するかどうかを設定する。<br>
+     * 初期値はfalseでUPDATE文を1回実行して更新する。UPDATE文で更新できないドライバーの場合のみtrueにする。
+     *
+     * @param isUpdateWithCursor
+     */
+    public void setUpdateWithCursor(boolean isUpdateWithCursor) {
+        this.isUpdateWithCursor = isUpdateWithCursor;
     }
 
     /**
-     * 連想配列の情報をテーブルに追加する。
+     * 抽出できたレコードをすべて連想配列の情報で更新する。<br>
+     * テーブルに存在するカラムのみを対象としたUPDATE文を作成して1回で更新する。
      *
      * @param values 連想配列
      * @param tableName テーブル名
+     * @param whereSet 更新対象の抽出条件
+     * @return 更新レコード数
      * @throws SQLException
+     * @throws DataNotFoundException 
      */
-    public void insert(RudeArray values, String tableName) throws SQLException {
-        try (Statement statement = this.connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_UPDATABLE)) {
-            statement.setQueryTimeout(this.timeout);
-            statement.setFetchSize(1);
-            try (ResultSet resultSet = statement.executeQuery(StringConverter.join("SELECT * FROM ", tableName, ";"))) {
-                ResultSetMetaData meta = resultSet.getMetaData();
-                resultSet.moveToInsertRow();
-                for (int i = 1; i <= meta.getColumnCount(); i++) {
-                    String columnName = meta.getColumnName(i);
-                    if (values.containsKey(columnName)) {
-                        applyValueForResultSet(resultSet, i, values.get(columnName));
-                    }
+    public int update(RudeArray values, String tableName, WhereSet whereSet) throws SQLException, DataNotFoundException {
+        ResultShape shape = null;
+        if (this.isUpdateWithCursor == false) {
+            shape = this.findTableShape(tableName);
+        }
+        String[] columnNames = null;
+        int[] targetIndexes = null;
+        int numberOfTargets = 0;
+        if (shape != null) {
+            columnNames = shape.getColumnNames();
+            targetIndexes = new int[columnNames.length];
+            for (int i = 0; i < columnNames.length; i++) {
+                if (values.containsKey(columnNames[i])) {
+                    targetIndexes[numberOfTargets] = i;
+                    numberOfTargets++;
                 }
-                resultSet.insertRow();
             }
         }
+        if (numberOfTargets == 0) {
+            try {
+                return this.updateByResultSet(values, tableName, whereSet);
+            } finally {
+                this.invalidateQueryResultCache(tableName);
+            }
+        }
+        StringBuilder stringBuilder = new StringBuilder("UPDATE ");
+        stringBuilder.append(tableName);
+        stringBuilder.append(" SET ");
+        for (int i = 0; i < numberOfTargets; i++) {
+            if (i > 0) {
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append(columnNames[targetIndexes[i]]);
+            stringBuilder.append(" = ?");
+        }
+        stringBuilder.append(" WHERE ");
+        stringBuilder.append(whereSet.buildParameterClause());
+        stringBuilder.append(";");
+        Object[] params = whereSet.buildParameters();
+        QueryTrace trace = new QueryTrace(stringBuilder.toString(), numberOfTargets + params.length);
+        PreparedStatement statement = this.prepareStatement(stringBuilder.toString());
+        trace.prepared();
+        try {
+            statement.setQueryTimeout(this.timeout);
+            int[] columnTypes = shape.getColumnTypes();
+            ColumnBinder[] binders = shape.getBinders();
+            for (int i = 0; i < numberOfTargets; i++) {
+                int index = targetIndexes[i];
+                binders[index].bind(statement, i + 1, columnTypes[index], values.get(columnNames[index]));
+            }
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(numberOfTargets + i + 1, castSearchValue(params[i]));
+            }
+            int result = statement.executeUpdate();
+            trace.setNumberOfRows(result);
+            if (result == 0) {
+                throw new DataNotFoundException();
+            }
+            return result;
+        } catch (SQLException exception) {
+            trace.failed(exception);
+            throw exception;
+        } finally {
+            this.releaseStatement(statement);
+            trace.finish();
+            this.invalidateQueryResultCache(tableName);
+        }
     }
 
     /**
-     * 抽出できたレコードをすべて連想配列の情報で更新する。
+     * 更新可能なResultSetを使用して抽出できたレコードをすべて連想配列の情報で更新する。
      *
      * @param values 連想配列
      * @param tableName テーブル名
      * @param whereSet 更新対象の抽出条件
+     * @return 更新レコード数
      * @throws SQLException
      * @throws DataNotFoundException 
      */
-    public void update(RudeArray values, String tableName, WhereSet whereSet) throws SQLException, DataNotFoundException {
+    private int updateByResultSet(RudeArray values, String tableName, WhereSet whereSet) throws SQLException, DataNotFoundException {
         StringBuilder stringBuilder = new StringBuilder("SELECT * FROM ");
         stringBuilder.append(tableName);
         stringBuilder.append(" WHERE ");
@@ -522,21 +1969,23 @@ public abstract class AbstractDatabase implements Closeable {
                 statement.setObject(i + 1, castSearchValue(params[i]));
             }
             try (ResultSet resultSet = statement.executeQuery()) {
-                boolean isUpdated = false;
-                ResultSetMetaData meta = resultSet.getMetaData();
+                int numberOfUpdated = 0;
+                ResultShape shape = new ResultShape(resultSet.getMetaData());
+                String[] columnNames = shape.getColumnNames();
+                ColumnBinder[] binders = shape.getBinders();
                 while (resultSet.next()) {
-                    for (int i = 1; i <= meta.getColumnCount(); i++) {
-                        String columnName = meta.getColumnName(i);
-                        if (values.containsKey(columnName)) {
-                            applyValueForResultSet(resultSet, i, values.get(columnName));
+                    for (int i = 0; i < columnNames.length; i++) {
+                        if (values.containsKey(columnNames[i])) {
+                            binders[i].update(resultSet, i + 1, values.get(columnNames[i]));
                         }
                     }
                     resultSet.updateRow();
-                    isUpdated = true;
+                    numberOfUpdated++;
                 }
-                if (isUpdated == false) {
+                if (numberOfUpdated == 0) {
                     throw new DataNotFoundException();
                 }
+                return numberOfUpdated;
             }
         }
     }
@@ -554,12 +2003,13 @@ public abstract class AbstractDatabase implements Closeable {
             statement.setQueryTimeout(this.timeout);
             try (ResultSet resultSet = statement.executeQuery(sql)) {
                 boolean isUpdated = false;
-                ResultSetMetaData meta = resultSet.getMetaData();
+                ResultShape shape = new ResultShape(resultSet.getMetaData());
+                String[] columnNames = shape.getColumnNames();
+                ColumnBinder[] binders = shape.getBinders();
                 while (resultSet.next()) {
-                    for (int i = 1; i <= meta.getColumnCount(); i++) {
-                        String columnName = meta.getColumnName(i);
-                        if (values.containsKey(columnName)) {
-                            applyValueForResultSet(resultSet, i, values.get(columnName));
+                    for (int i = 0; i < columnNames.length; i++) {
+                        if (values.containsKey(columnNames[i])) {
+                            binders[i].update(resultSet, i + 1, values.get(columnNames[i]));
                         }
                     }
                     resultSet.updateRow();
@@ -589,12 +2039,13 @@ public abstract class AbstractDatabase implements Closeable {
             }
             try (ResultSet resultSet = statement.executeQuery()) {
                 boolean isUpdated = false;
-                ResultSetMetaData meta = resultSet.getMetaData();
+                ResultShape shape = new ResultShape(resultSet.getMetaData());
+                String[] columnNames = shape.getColumnNames();
+                ColumnBinder[] binders = shape.getBinders();
                 while (resultSet.next()) {
-                    for (int i = 1; i <= meta.getColumnCount(); i++) {
-                        String columnName = meta.getColumnName(i);
-                        if (values.containsKey(columnName)) {
-                            applyValueForResultSet(resultSet, i, values.get(columnName));
+                    for (int i = 0; i < columnNames.length; i++) {
+                        if (values.containsKey(columnNames[i])) {
+                            binders[i].update(resultSet, i + 1, values.get(columnNames[i]));
                         }
                     }
                     resultSet.updateRow();
@@ -607,207 +2058,6 @@ public abstract class AbstractDatabase implements Closeable {
         }
     }
 
-    /**
-     * ResultSetに適宜値を変換の上入力する。
-     *
-     * @param resultSet 対象ResultSet
-     * @param columnIndex カラム番号(１から開始)
-     * @param value 入力する値
-     * @throws SQLException
-     */
-    private static void applyValueForResultSet(ResultSet resultSet, int columnIndex, Object value) throws SQLException {
-        ResultSetMetaData meta = resultSet.getMetaData();
-        switch (meta.getColumnType(columnIndex)) {
-        case Types.BOOLEAN:
-            Boolean booleanValue;
-            try {
-                try {
-                    booleanValue = (boolean) value;
-                } catch (ClassCastException exception) {
-                    booleanValue = StringConverter.stringToBoolean(value.toString());
-                }
-            } catch (NullPointerException exception) {
-                booleanValue = false;
-            }
-            resultSet.updateBoolean(columnIndex, booleanValue);
-            break;
-        case Types.INTEGER:
-        case Types.SMALLINT:
-        case Types.TINYINT:
-            Integer integerValue;
-            try {
-                try {
-                    integerValue = (int) value;
-                    resultSet.updateInt(columnIndex, integerValue);
-                } catch (ClassCastException exception) {
-                    integerValue = StringConverter.stringToInteger(value.toString());
-                    resultSet.updateInt(columnIndex, integerValue);
-                }
-            } catch (NullPointerException exception) {
-                resultSet.updateObject(columnIndex, null);
-            }
-            break;
-        case Types.BIGINT:
-            Long longValue;
-            try {
-                try {
-                    longValue = (long) value;
-                    resultSet.updateLong(columnIndex, longValue);
-                } catch (ClassCastException exception) {
-                    longValue = StringConverter.stringToLong(value.toString());
-                    resultSet.updateLong(columnIndex, longValue);
-                }
-            } catch (NullPointerException exception) {
-                resultSet.updateObject(columnIndex, null);
-            }
-            break;
-        case Types.REAL:
-            Float floatValue;
-            try {
-                try {
-                    floatValue = (float) value;
-                    resultSet.updateFloat(columnIndex, floatValue);
-                } catch (ClassCastException exception) {
-                    floatValue = StringConverter.stringToFloat(value.toString());
-                    resultSet.updateFloat(columnIndex, floatValue);
-                }
-            } catch (NullPointerException exception) {
-                resultSet.updateObject(columnIndex, null);
-            }
-            break;
-        case Types.DOUBLE:
-        case Types.FLOAT:
-        case Types.DECIMAL:
-        case Types.NUMERIC:
-            Double doubleValue;
-            try {
-                try {
-                    doubleValue = (double) value;
-                    resultSet.updateDouble(columnIndex, doubleValue);
-                } catch (ClassCastException exception) {
-                    doubleValue = StringConverter.stringToDouble(value.toString());
-                    resultSet.updateDouble(columnIndex, doubleValue);
-                }
-            } catch (NullPointerException exception) {
-                resultSet.updateObject(columnIndex, null);
-            }
-            break;
-        case Types.CHAR:
-        case Types.VARCHAR:
-        case Types.LONGVARCHAR:
-        case Types.NCLOB:
-            String stringValue;
-            try {
-                stringValue = value.toString();
-                resultSet.updateString(columnIndex, stringValue);
-            } catch (NullPointerException exception) {
-                resultSet.updateObject(columnIndex, null);
-            }
-            break;
-        case Types.NCHAR:
-        case Types.NVARCHAR:
-        case Types.LONGNVARCHAR:
-            String nStringValue;
-            try {
-                nStringValue = value.toString();
-                resultSet.updateNString(columnIndex, nStringValue);
-            } catch (NullPointerException exception) {
-                resultSet.updateObject(columnIndex, null);
-            }
-            break;
-        case Types.BINARY:
-        case Types.VARBINARY:
-        case Types.LONGVARBINARY:
-            try {
-                resultSet.updateBytes(columnIndex, (byte[]) value);
-            } catch (ClassCastException exception) {
-                resultSet.updateObject(columnIndex, null);
-            }
-            break;
-        case Types.DATE:
-            Date dateValue;
-            // java.sql.Date
-            try {
-                dateValue = (Date) value;
-            } catch (ClassCastException exception) {
-                // Timestamp
-                try {
-                    dateValue = new Date(((Timestamp) value).getTime());
-                } catch (ClassCastException exception2) {
-                    // java.util.Date
-                    try {
-                        dateValue = new Date(((java.util.Date) value).getTime());
-                    } catch (ClassCastException exception3) {
-                        dateValue = new Date(Datetime.stringToDate(value.toString()).getTime());
-                    }
-                }
-            } catch (NullPointerException exception) {
-                dateValue = null;
-            }
-            if (dateValue != null) {
-                resultSet.updateDate(columnIndex, dateValue);
-            } else {
-                resultSet.updateObject(columnIndex, null);
-            }
-            break;
-        case Types.TIME:
-            Time timeValue;
-            // Time
-            try {
-                timeValue = (Time) value;
-            } catch (ClassCastException exception) {
-                // Timestamp
-                try {
-                    timeValue = new Time(((Timestamp) value).getTime());
-                } catch (ClassCastException exception2) {
-                    // java.util.Date
-                    try {
-                        timeValue = new Time(((java.util.Date) value).getTime());
-                    } catch (ClassCastException exception3) {
-                        timeValue = new Time(Datetime.stringToDate(value.toString()).getTime());
-                    }
-                    timeValue = new Time(Datetime.stringToDate(value.toString()).getTime());
-                }
-            } catch (NullPointerException exception) {
-                timeValue = null;
-            }
-            if (timeValue != null) {
-                resultSet.updateTime(columnIndex, timeValue);
-            } else {
-                resultSet.updateObject(columnIndex, null);
-            }
-            break;
-        case Types.TIMESTAMP:
-            Timestamp timestampValue;
-            // Timestamp
-            try {
-                timestampValue = (Timestamp) value;
-            } catch (ClassCastException exception) {
-                // java.util.Date
-                try {
-                    timestampValue = new Timestamp(((java.util.Date) value).getTime());
-                } catch (ClassCastException exception2) {
-                    // java.sql.Date
-                    try {
-                        timestampValue = new Timestamp(((Date) value).getTime());
-                    } catch (ClassCastException exception3) {
-                        timestampValue = new Timestamp(Datetime.stringToDate(value.toString()).getTime());
-                    }
-                }
-            } catch (NullPointerException exception) {
-                timestampValue = null;
-            }
-            if (timestampValue != null) {
-                resultSet.updateTimestamp(columnIndex, timestampValue);
-            } else {
-                resultSet.updateObject(columnIndex, null);
-            }
-            break;
-        default:
-            resultSet.updateObject(columnIndex, value);
-        }
-    }
-
     /**
      * AutoCommitが設定されているかを取得する。
      *
@@ -829,6 +2079,9 @@ public abstract class AbstractDatabase implements Closeable {
      */
     public void setAutoCommit(boolean isAutoCommit) throws SQLException {
         this.connection.setAutoCommit(isAutoCommit);
+        if (isAutoCommit) {
+            this.invalidateUncommittedQueryResultCache();
+        }
     }
 
     /**
@@ -838,6 +2091,7 @@ public abstract class AbstractDatabase implements Closeable {
      */
     public void commit() throws SQLException {
         this.connection.commit();
+        this.invalidateUncommittedQueryResultCache();
     }
 
     /**
@@ -846,7 +2100,12 @@ public abstract class AbstractDatabase implements Closeable {
      * @throws SQLException
      */
     public void rollback() throws SQLException {
-        this.connection.rollback();
+        try {
+            this.connection.rollback();
+        } finally {
+            this.statementCache.clear();
+            this.invalidateUncommittedQueryResultCache();
+        }
     }
 
     /**
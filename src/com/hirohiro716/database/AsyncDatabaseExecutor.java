@@ -0,0 +1,252 @@
+package com.hirohiro716.database;
+
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import com.hirohiro716.RudeArray;
+
+/**
+ * コネクションプールから取得したデータベースオブジェクトで別スレッドからSQLを実行するクラス。<br>
+ * 互いに依存しない複数の検索を並行して実行する場合に使用する。
+ * CompletableFutureのcancelメソッドを呼び出すと実行中のSQLにはAbstractDatabaseのcancelメソッドで中止が要求される。
+ *
+ * @author hiro
+ *
+ * @param <D> データベースクラス
+ */
+public class AsyncDatabaseExecutor<D extends AbstractDatabase> implements Closeable {
+
+    /**
+     * "非同期実行は終了しています。" というエラーメッセージ用の文字列
+     */
+    public static final String ERROR_MESSAGE_CLOSED = "非同期実行は終了しています。";
+
+    /**
+     * データベースオブジェクトを使用する処理のインターフェース。
+     *
+     * @author hiro
+     *
+     * @param <D> データベースクラス
+     * @param <T> 処理結果の型
+     */
+    public interface DatabaseWork<D extends AbstractDatabase, T> {
+
+        /**
+         * データベースオブジェクトを使用して処理する。
+         *
+         * @param database コネクションプールから取得したデータベースオブジェクト
+         * @return 処理結果
+         * @throws Exception
+         */
+        public T run(D database) throws Exception;
+    }
+
+    /**
+     * コネクションプールの最大数と同じスレッド数で実行するコンストラクタ。
+     *
+     * @param pool コネクションプール
+     */
+    public AsyncDatabaseExecutor(DatabasePool<D> pool) {
+        this(pool, pool.getMaximumSize());
+    }
+
+    /**
+     * コンストラクタ。
+     *
+     * @param pool コネクションプール
+     * @param numberOfThreads 同時に実行する最大数
+     */
+    public AsyncDatabaseExecutor(DatabasePool<D> pool, int numberOfThreads) {
+        this.pool = pool;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AsyncDatabaseExecutor-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    private DatabasePool<D> pool;
+
+    private ThreadPoolExecutor executor;
+
+    private int statementTimeout = 0;
+
+    /**
+     * 実行するSQLのタイムアウト(秒数)を取得する。
+     *
+     * @return タイムアウト秒数(0の場合はデータベースオブジェクトの設定に従う)
+     */
+    public int getStatementTimeout() {
+        return this.statementTimeout;
+    }
+
+    /**
+     * 実行するSQLのタイムアウト(秒数)を設定する。
+     *
+     * @param statementTimeout タイムアウト秒数(0の場合はデータベースオブジェクトの設定に従う)
+     */
+    public void setStatementTimeout(int statementTimeout) {
+        this.statementTimeout = statementTimeout;
+    }
+
+    /**
+     * 実行を待機している処理の数を取得する。
+     *
+     * @return 処理の数
+     */
+    public int getQueuedCount() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * データベースオブジェクトを使用する処理を別スレッドで実行する。
+     *
+     * @param <T> 処理結果の型
+     * @param work 処理
+     * @return 処理結果(closeメソッドの後に呼び出した場合は例外で完了している)
+     */
+    public <T> CompletableFuture<T> submit(DatabaseWork<D, T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Object lock = new Object();
+        @SuppressWarnings("unchecked")
+        D[] running = (D[]) new AbstractDatabase[1];
+        Runnable runnable = new Runnable() {
+
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    return;
+                }
+                D database;
+                try {
+                    database = AsyncDatabaseExecutor.this.pool.borrow();
+                } catch (SQLException exception) {
+                    future.completeExceptionally(exception);
+                    return;
+                }
+                int defaultStatementTimeout = database.getStatementTimeout();
+                try {
+                    if (AsyncDatabaseExecutor.this.statementTimeout > 0) {
+                        database.setStatementTimeout(AsyncDatabaseExecutor.this.statementTimeout);
+                    }
+                    synchronized (lock) {
+                        if (future.isDone()) {
+                            return;
+                        }
+                        running[0] = database;
+                    }
+                    future.complete(work.run(database));
+                } catch (Throwable exception) {
+                    future.completeExceptionally(exception);
+                } finally {
+                    synchronized (lock) {
+                        running[0] = null;
+                    }
+                    database.setStatementTimeout(defaultStatementTimeout);
+                    database.close();
+                }
+            }
+        };
+        Future<?> task;
+        try {
+            task = this.executor.submit(runnable);
+        } catch (RejectedExecutionException exception) {
+            future.completeExceptionally(new SQLException(ERROR_MESSAGE_CLOSED, exception));
+            return future;
+        }
+        future.whenComplete(new BiConsumer<T, Throwable>() {
+
+            @Override
+            public void accept(T result, Throwable throwable) {
+                if (future.isCancelled() == false) {
+                    return;
+                }
+                task.cancel(false);
+                synchronized (lock) {
+                    if (running[0] != null) {
+                        try {
+                            running[0].cancel();
+                        } catch (SQLException exception) {
+                            exception.printStackTrace();
+                        }
+                    }
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * プリペアードステートメントで更新系SQLを別スレッドで実行する。
+     *
+     * @param sql 更新系SQL
+     * @param params パラメータ
+     * @return 更新レコード数
+     */
+    public CompletableFuture<Integer> executeAsync(String sql, Object[] params) {
+        return this.submit(new DatabaseWork<D, Integer>() {
+
+            @Override
+            public Integer run(D database) throws Exception {
+                return database.execute(sql, params);
+            }
+        });
+    }
+
+    /**
+     * プリペアードステートメントでSELECT結果の最初のレコードを別スレッドで取得する。
+     *
+     * @param sql
+     * @param params パラメータ
+     * @return 連想配列
+     */
+    public CompletableFuture<RudeArray> fetchRowAsync(String sql, Object[] params) {
+        return this.submit(new DatabaseWork<D, RudeArray>() {
+
+            @Override
+            public RudeArray run(D database) throws Exception {
+                return database.fetchRow(sql, params);
+            }
+        });
+    }
+
+    /**
+     * プリペアードステートメントでSELECT結果のレコードを別スレッドで取得する。
+     *
+     * @param sql
+     * @param params パラメータ
+     * @return 複数の連想配列
+     */
+    public CompletableFuture<RudeArray[]> fetchRowsAsync(String sql, Object[] params) {
+        return this.submit(new DatabaseWork<D, RudeArray[]>() {
+
+            @Override
+            public RudeArray[] run(D database) throws Exception {
+                return database.fetchRows(sql, params);
+            }
+        });
+    }
+
+    /**
+     * 新しい処理の受け付けを終了する。受け付け済みの処理は実行される。コネクションプールは閉じない。
+     */
+    @Override
+    public void close() {
+        this.executor.shutdown();
+    }
+}
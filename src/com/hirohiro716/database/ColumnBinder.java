@@ -0,0 +1,271 @@
+package com.hirohiro716.database;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import com.hirohiro716.StringConverter;
+import com.hirohiro716.datetime.Datetime;
+
+/**
+ * カラムのJDBC型に適した型に値を変換してPreparedStatementやResultSetに入力する方法。<br>
+ * JDBC型ごとに決まる変換方法を値のクラスで分岐して、例外を発生させずに変換する。
+ *
+ * @author hiro
+ *
+ */
+enum ColumnBinder {
+    /**
+     * 変換しない
+     */
+    NONE,
+    /**
+     * 真偽値に変換する。nullはfalseに変換する
+     */
+    BOOLEAN,
+    /**
+     * Integerに変換する
+     */
+    INTEGER,
+    /**
+     * Longに変換する
+     */
+    LONG,
+    /**
+     * Floatに変換する
+     */
+    FLOAT,
+    /**
+     * Doubleに変換する
+     */
+    DOUBLE,
+    /**
+     * 文字列に変換する
+     */
+    STRING,
+    /**
+     * 各国語文字セットの文字列に変換する
+     */
+    NATIONAL_STRING,
+    /**
+     * バイト配列以外はnullにする
+     */
+    BINARY,
+    /**
+     * java.sql.Dateに変換する
+     */
+    DATE,
+    /**
+     * Timeに変換する
+     */
+    TIME,
+    /**
+     * Timestampに変換する
+     */
+    TIMESTAMP;
+
+    /**
+     * JDBC型に対応する変換方法を取得する。
+     *
+     * @param columnType JDBC型
+     * @return 変換方法
+     */
+    static ColumnBinder find(int columnType) {
+        switch (columnType) {
+        case Types.BOOLEAN:
+            return BOOLEAN;
+        case Types.INTEGER:
+        case Types.SMALLINT:
+        case Types.TINYINT:
+            return INTEGER;
+        case Types.BIGINT:
+            return LONG;
+        case Types.REAL:
+            return FLOAT;
+        case Types.DOUBLE:
+        case Types.FLOAT:
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+            return DOUBLE;
+        case Types.CHAR:
+        case Types.VARCHAR:
+        case Types.LONGVARCHAR:
+        case Types.NCLOB:
+            return STRING;
+        case Types.NCHAR:
+        case Types.NVARCHAR:
+        case Types.LONGNVARCHAR:
+            return NATIONAL_STRING;
+        case Types.BINARY:
+        case Types.VARBINARY:
+        case Types.LONGVARBINARY:
+            return BINARY;
+        case Types.DATE:
+            return DATE;
+        case Types.TIME:
+            return TIME;
+        case Types.TIMESTAMP:
+            return TIMESTAMP;
+        default:
+            return NONE;
+        }
+    }
+
+    /**
+     * JDBC型の配列に対応する変換方法の配列を作成する。
+     *
+     * @param columnTypes JDBC型
+     * @return 変換方法
+     */
+    static ColumnBinder[] find(int[] columnTypes) {
+        ColumnBinder[] binders = new ColumnBinder[columnTypes.length];
+        for (int i = 0; i < columnTypes.length; i++) {
+            binders[i] = find(columnTypes[i]);
+        }
+        return binders;
+    }
+
+    /**
+     * 値をJDBC型に適した型に変換する。
+     *
+     * @param value 元の値
+     * @return 変換した値
+     */
+    Object convert(Object value) {
+        switch (this) {
+        case BOOLEAN:
+            if (value == null) {
+                return false;
+            }
+            if (value instanceof Boolean) {
+                return value;
+            }
+            return StringConverter.stringToBoolean(value.toString());
+        case INTEGER:
+            if (value == null || value instanceof Integer) {
+                return value;
+            }
+            if (value instanceof Short || value instanceof Byte) {
+                return ((Number) value).intValue();
+            }
+            return StringConverter.stringToInteger(value.toString());
+        case LONG:
+            if (value == null || value instanceof Long) {
+                return value;
+            }
+            if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return ((Number) value).longValue();
+            }
+            return StringConverter.stringToLong(value.toString());
+        case FLOAT:
+            if (value == null || value instanceof Float) {
+                return value;
+            }
+            return StringConverter.stringToFloat(value.toString());
+        case DOUBLE:
+            if (value == null || value instanceof Double) {
+                return value;
+            }
+            if (value instanceof Number && value instanceof Float == false) {
+                return ((Number) value).doubleValue();
+            }
+            return StringConverter.stringToDouble(value.toString());
+        case STRING:
+        case NATIONAL_STRING:
+            if (value == null) {
+                return null;
+            }
+            return value.toString();
+        case BINARY:
+            if (value instanceof byte[]) {
+                return value;
+            }
+            return null;
+        case DATE:
+            if (value == null || value instanceof Date) {
+                return value;
+            }
+            java.util.Date date = toDate(value);
+            if (date == null) {
+                return null;
+            }
+            return new Date(date.getTime());
+        case TIME:
+            if (value == null || value instanceof Time) {
+                return value;
+            }
+            java.util.Date time = toDate(value);
+            if (time == null) {
+                return null;
+            }
+            return new Time(time.getTime());
+        case TIMESTAMP:
+            if (value == null || value instanceof Timestamp) {
+                return value;
+            }
+            java.util.Date timestamp = toDate(value);
+            if (timestamp == null) {
+                return null;
+            }
+            return new Timestamp(timestamp.getTime());
+        default:
+            return value;
+        }
+    }
+
+    /**
+     * 日時または日時を表す文字列をjava.util.Dateに変換する。
+     *
+     * @param value 元の値
+     * @return 変換した値(変換できない場合はnull)
+     */
+    private static java.util.Date toDate(Object value) {
+        if (value instanceof java.util.Date) {
+            return (java.util.Date) value;
+        }
+        return Datetime.stringToDate(value.toString());
+    }
+
+    /**
+     * PreparedStatementのパラメータに値を変換の上入力する。
+     *
+     * @param statement 対象PreparedStatement
+     * @param parameterIndex パラメータ番号(１から開始)
+     * @param columnType 入力先カラムのJDBC型
+     * @param value 入力する値
+     * @throws SQLException
+     */
+    void bind(PreparedStatement statement, int parameterIndex, int columnType, Object value) throws SQLException {
+        Object convertedValue = this.convert(value);
+        if (convertedValue == null) {
+            statement.setNull(parameterIndex, columnType);
+            return;
+        }
+        if (this == NATIONAL_STRING) {
+            statement.setNString(parameterIndex, (String) convertedValue);
+        } else {
+            statement.setObject(parameterIndex, convertedValue);
+        }
+    }
+
+    /**
+     * ResultSetのカラムに値を変換の上入力する。
+     *
+     * @param resultSet 対象ResultSet
+     * @param columnIndex カラム番号(１から開始)
+     * @param value 入力する値
+     * @throws SQLException
+     */
+    void update(ResultSet resultSet, int columnIndex, Object value) throws SQLException {
+        Object convertedValue = this.convert(value);
+        if (convertedValue != null && this == NATIONAL_STRING) {
+            resultSet.updateNString(columnIndex, (String) convertedValue);
+        } else {
+            resultSet.updateObject(columnIndex, convertedValue);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.hirohiro716.database;
+
+import java.sql.SQLException;
+
+/**
+ * 編集中のレコードがほかの接続によって変更または削除されていた場合に発生する例外クラス
+ * @author hiro
+ *
+ */
+public class ConcurrentUpdateException extends SQLException {
+
+    /**
+     * serialVersionUID
+     */
+    private static final long serialVersionUID = -4518330712806342719L;
+
+    private final static String MESSAGE = "ほかのユーザーによってデータが変更されています。";
+
+    /**
+     * 初期詳細メッセージを持つ新規例外を構築する。
+     */
+    public ConcurrentUpdateException() {
+        super(MESSAGE);
+    }
+
+    /**
+     * 指定された詳細メッセージを持つ新規例外を構築する。
+     *
+     * @param message 詳細メッセージ
+     */
+    public ConcurrentUpdateException(String message) {
+        super(message);
+    }
+
+    /**
+     * 初期詳細メッセージを持つ新規例外を構築する。
+     *
+     * @param cause 原因(null値が許可されており原因が存在しないか不明であることを示す)
+     */
+    public ConcurrentUpdateException(Throwable cause) {
+        super(MESSAGE, cause);
+    }
+}
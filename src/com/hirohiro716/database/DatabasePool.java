@@ -0,0 +1,524 @@
+package com.hirohiro716.database;
+
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接続済みのデータベースオブジェクトを使い回すコネクションプールクラス。<br>
+ * borrowメソッドで取得したデータベースオブジェクトのcloseメソッドを呼び出すと、接続は切断されずにプールに返却される。
+ *
+ * @author hiro
+ *
+ * @param <D> プールするデータベースクラス
+ */
+public class DatabasePool<D extends AbstractDatabase> implements Closeable {
+
+    /**
+     * "接続の取得がタイムアウトしました。" というエラーメッセージ用の文字列
+     */
+    public static final String ERROR_MESSAGE_BORROW_TIMEOUT = "接続の取得がタイムアウトしました。";
+
+    /**
+     * "コネクションプールは閉じられています。" というエラーメッセージ用の文字列
+     */
+    public static final String ERROR_MESSAGE_POOL_CLOSED = "コネクションプールは閉じられています。";
+
+    /**
+     * 接続済みのデータベースオブジェクトを作成するインターフェース。
+     *
+     * @author hiro
+     *
+     * @param <D> 作成するデータベースクラス
+     */
+    public interface DatabaseCreator<D extends AbstractDatabase> {
+
+        /**
+         * 接続済みのデータベースオブジェクトを作成する。
+         *
+         * @return データベースオブジェクト
+         * @throws ClassNotFoundException
+         * @throws SQLException
+         */
+        public D create() throws ClassNotFoundException, SQLException;
+    }
+
+    /**
+     * コンストラクタ。
+     *
+     * @param creator 接続済みのデータベースオブジェクトを作成するインスタンス
+     * @param maximumSize プールする接続の最大数
+     */
+    public DatabasePool(DatabaseCreator<D> creator, int maximumSize) {
+        this.creator = creator;
+        this.maximumSize = maximumSize;
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "DatabasePool-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.housekeeper.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                DatabasePool.this.housekeep();
+            }
+        }, HOUSEKEEPING_INTERVAL_MILLIS, HOUSEKEEPING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static final long HOUSEKEEPING_INTERVAL_MILLIS = 5000;
+
+    private DatabaseCreator<D> creator;
+
+    private int maximumSize;
+
+    /**
+     * プールする接続の最大数を取得する。
+     *
+     * @return 最大数
+     */
+    public int getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    private long borrowTimeout = 30000;
+
+    /**
+     * 接続の取得を待機する最大時間(ミリ秒)を取得する。
+     *
+     * @return 待機時間
+     */
+    public long getBorrowTimeout() {
+        return this.borrowTimeout;
+    }
+
+    /**
+     * 接続の取得を待機する最大時間(ミリ秒)を設定する。初期値は30000。
+     *
+     * @param borrowTimeout 待機時間
+     */
+    public void setBorrowTimeout(long borrowTimeout) {
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    private long idleTimeout = 600000;
+
+    /**
+     * 使用されていない接続を切断するまでの時間(ミリ秒)を取得する。
+     *
+     * @return 時間(0以下の場合は切断しない)
+     */
+    public long getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    /**
+     * 使用されていない接続を切断するまでの時間(ミリ秒)を設定する。初期値は600000。
+     *
+     * @param idleTimeout 時間(0以下の場合は切断しない)
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    private long maximumLifetime = 1800000;
+
+    /**
+     * 接続を使い回す最大時間(ミリ秒)を取得する。
+     *
+     * @return 時間(0以下の場合は無制限)
+     */
+    public long getMaximumLifetime() {
+        return this.maximumLifetime;
+    }
+
+    /**
+     * 接続を使い回す最大時間(ミリ秒)を設定する。初期値は1800000。
+     *
+     * @param maximumLifetime 時間(0以下の場合は無制限)
+     */
+    public void setMaximumLifetime(long maximumLifetime) {
+        this.maximumLifetime = maximumLifetime;
+    }
+
+    private String validationQuery = null;
+
+    /**
+     * 貸し出し前に接続を検証するSQLを取得する。
+     *
+     * @return SQL(nullの場合はConnection.isValidメソッドで検証する)
+     */
+    public String getValidationQuery() {
+        return this.validationQuery;
+    }
+
+    /**
+     * 貸し出し前に接続を検証するSQLを設定する。
+     *
+     * @param validationQuery SQL(nullの場合はConnection.isValidメソッドで検証する)
+     */
+    public void setValidationQuery(String validationQuery) {
+        this.validationQuery = validationQuery;
+    }
+
+    private long leakDetectionThreshold = 0;
+
+    /**
+     * 返却されていない接続をリークとして報告するまでの時間(ミリ秒)を取得する。
+     *
+     * @return 時間(0以下の場合は検出しない)
+     */
+    public long getLeakDetectionThreshold() {
+        return this.leakDetectionThreshold;
+    }
+
+    /**
+     * 返却されていない接続をリークとして報告するまでの時間(ミリ秒)を設定する。<br>
+     * 有効にすると貸し出し時の呼び出し元のスタックトレースを記録し、時間を超えた接続について標準エラーに出力する。
+     *
+     * @param leakDetectionThreshold 時間(0以下の場合は検出しない)
+     */
+    public void setLeakDetectionThreshold(long leakDetectionThreshold) {
+        this.leakDetectionThreshold = leakDetectionThreshold;
+    }
+
+    /**
+     * プールしている接続の情報を保持するクラス。
+     *
+     * @author hiro
+     */
+    private class Entry {
+
+        private D database;
+
+        private long createdTime = System.currentTimeMillis();
+
+        private long lastUsedTime = System.currentTimeMillis();
+
+        private long borrowedTime;
+
+        private Throwable borrowedStackTrace;
+
+        private boolean isLeakReported = false;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param database データベースオブジェクト
+         */
+        private Entry(D database) {
+            this.database = database;
+        }
+
+        /**
+         * 最大時間を超えて使い回されているかどうか。
+         *
+         * @param now 現在時刻
+         * @return 結果
+         */
+        private boolean isExpired(long now) {
+            return DatabasePool.this.maximumLifetime > 0 && now - this.createdTime > DatabasePool.this.maximumLifetime;
+        }
+    }
+
+    private ArrayDeque<Entry> idleEntries = new ArrayDeque<>();
+
+    private IdentityHashMap<AbstractDatabase, Entry> borrowedEntries = new IdentityHashMap<>();
+
+    private int numberOfEntries = 0;
+
+    private int numberOfWaiting = 0;
+
+    private boolean isClosed = false;
+
+    private ScheduledExecutorService housekeeper;
+
+    private LatencyHistogram borrowLatencyHistogram = new LatencyHistogram();
+
+    /**
+     * プールから接続済みのデータベースオブジェクトを取得する。<br>
+     * 使用後は必ずデータベースオブジェクトのcloseメソッドを呼び出してプールに返却する。
+     *
+     * @return データベースオブジェクト
+     * @throws SQLException 接続の取得がタイムアウトした場合やプールが閉じられている場合
+     */
+    public D borrow() throws SQLException {
+        long startTime = System.nanoTime();
+        long deadline = System.currentTimeMillis() + this.borrowTimeout;
+        while (true) {
+            ArrayList<Entry> expiredEntries = new ArrayList<>();
+            Entry entry;
+            try {
+                entry = this.takeIdleEntryOrReserve(deadline, expiredEntries);
+            } finally {
+                for (Entry expiredEntry: expiredEntries) {
+                    expiredEntry.database.closePhysically();
+                }
+            }
+            if (entry == null) {
+                entry = this.createEntry();
+            } else if (this.isValid(entry.database) == false) {
+                this.discard(entry);
+                continue;
+            }
+            boolean isPoolClosed;
+            synchronized (this) {
+                isPoolClosed = this.isClosed;
+                if (isPoolClosed) {
+                    this.numberOfEntries--;
+                } else {
+                    entry.borrowedTime = System.currentTimeMillis();
+                    entry.isLeakReported = false;
+                    if (this.leakDetectionThreshold > 0) {
+                        entry.borrowedStackTrace = new Throwable("Database borrowed here");
+                    } else {
+                        entry.borrowedStackTrace = null;
+                    }
+                    this.borrowedEntries.put(entry.database, entry);
+                }
+            }
+            if (isPoolClosed) {
+                entry.database.closePhysically();
+                throw new SQLException(ERROR_MESSAGE_POOL_CLOSED);
+            }
+            this.borrowLatencyHistogram.record(System.nanoTime() - startTime);
+            return entry.database;
+        }
+    }
+
+    /**
+     * 使用されていない接続を取り出す。取り出せる接続がなく新規に作成できる場合は枠を確保してnullを返す。<br>
+     * 有効期間を過ぎた接続は枠を解放してexpiredEntriesに追加する。ロックを保持したまま切断しないように、切断は呼び出し元で行う。
+     *
+     * @param deadline 待機を終了する時刻
+     * @param expiredEntries 有効期間を過ぎた接続を追加するリスト
+     * @return 使用されていない接続か枠を確保した場合はnull
+     * @throws SQLException
+     */
+    private synchronized Entry takeIdleEntryOrReserve(long deadline, List<Entry> expiredEntries) throws SQLException {
+        while (true) {
+            if (this.isClosed) {
+                throw new SQLException(ERROR_MESSAGE_POOL_CLOSED);
+            }
+            long now = System.currentTimeMillis();
+            while (this.idleEntries.size() > 0) {
+                Entry entry = this.idleEntries.pollFirst();
+                if (entry.isExpired(now) == false) {
+                    return entry;
+                }
+                this.numberOfEntries--;
+                expiredEntries.add(entry);
+            }
+            if (this.numberOfEntries < this.maximumSize) {
+                this.numberOfEntries++;
+                return null;
+            }
+            long remaining = deadline - now;
+            if (remaining <= 0) {
+                throw new SQLException(ERROR_MESSAGE_BORROW_TIMEOUT);
+            }
+            this.numberOfWaiting++;
+            try {
+                this.wait(remaining);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(exception);
+            } finally {
+                this.numberOfWaiting--;
+            }
+        }
+    }
+
+    /**
+     * 確保した枠に新しい接続を作成する。
+     *
+     * @return 接続の情報
+     * @throws SQLException
+     */
+    private Entry createEntry() throws SQLException {
+        try {
+            D database = this.creator.create();
+            database.setPool(this);
+            return new Entry(database);
+        } catch (ClassNotFoundException | SQLException | RuntimeException exception) {
+            synchronized (this) {
+                this.numberOfEntries--;
+                this.notifyAll();
+            }
+            if (exception instanceof SQLException) {
+                throw (SQLException) exception;
+            }
+            throw new SQLException(exception);
+        }
+    }
+
+    /**
+     * 接続が使用できるか検証する。
+     *
+     * @param database データベースオブジェクト
+     * @return 結果
+     */
+    private boolean isValid(D database) {
+        try {
+            if (database.isClosed()) {
+                return false;
+            }
+            if (this.validationQuery == null) {
+                return database.getConnection().isValid(5);
+            }
+            try (Statement statement = database.getConnection().createStatement()) {
+                statement.setQueryTimeout(5);
+                statement.execute(this.validationQuery);
+            }
+            return true;
+        } catch (Exception exception) {
+            return false;
+        }
+    }
+
+    /**
+     * 接続を破棄して枠を解放する。
+     *
+     * @param entry 接続の情報
+     */
+    private void discard(Entry entry) {
+        entry.database.closePhysically();
+        synchronized (this) {
+            this.numberOfEntries--;
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * データベースオブジェクトをプールに返却する。これはAbstractDatabaseのcloseメソッドから呼び出される。
+     *
+     * @param database データベースオブジェクト
+     */
+    void giveBack(AbstractDatabase database) {
+        Entry entry;
+        synchronized (this) {
+            entry = this.borrowedEntries.remove(database);
+        }
+        if (entry == null) {
+            return;
+        }
+        boolean isReusable;
+        try {
+            database.resetForReuse();
+            isReusable = database.isClosed() == false;
+        } catch (SQLException exception) {
+            isReusable = false;
+        }
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (isReusable && this.isClosed == false && entry.isExpired(now) == false) {
+                entry.lastUsedTime = now;
+                entry.borrowedStackTrace = null;
+                this.idleEntries.addFirst(entry);
+                this.notifyAll();
+                return;
+            }
+        }
+        this.discard(entry);
+    }
+
+    /**
+     * 使用されていない接続の切断とリークの検出を行う。
+     */
+    private void housekeep() {
+        ArrayList<Entry> evictedEntries = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            Iterator<Entry> iterator = this.idleEntries.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.isExpired(now) || this.idleTimeout > 0 && now - entry.lastUsedTime > this.idleTimeout) {
+                    iterator.remove();
+                    evictedEntries.add(entry);
+                }
+            }
+            if (this.leakDetectionThreshold > 0) {
+                for (Entry entry: this.borrowedEntries.values()) {
+                    if (entry.isLeakReported == false && entry.borrowedStackTrace != null && now - entry.borrowedTime > this.leakDetectionThreshold) {
+                        entry.isLeakReported = true;
+                        System.err.println("Possible connection leak: borrowed " + (now - entry.borrowedTime) + "ms ago and not returned.");
+                        entry.borrowedStackTrace.printStackTrace();
+                    }
+                }
+            }
+        }
+        for (Entry entry: evictedEntries) {
+            this.discard(entry);
+        }
+    }
+
+    /**
+     * 貸し出し中の接続数を取得する。
+     *
+     * @return 接続数
+     */
+    public synchronized int getActiveCount() {
+        return this.borrowedEntries.size();
+    }
+
+    /**
+     * 使用されていない接続数を取得する。
+     *
+     * @return 接続数
+     */
+    public synchronized int getIdleCount() {
+        return this.idleEntries.size();
+    }
+
+    /**
+     * 接続の取得を待機しているスレッド数を取得する。
+     *
+     * @return スレッド数
+     */
+    public synchronized int getWaitingCount() {
+        return this.numberOfWaiting;
+    }
+
+    /**
+     * 接続の取得にかかった時間の分布を取得する。
+     *
+     * @return 時間の分布
+     */
+    public LatencyHistogram getBorrowLatencyHistogram() {
+        return this.borrowLatencyHistogram;
+    }
+
+    /**
+     * プールを閉じて使用されていない接続を切断する。貸し出し中の接続は返却された時点で切断される。
+     */
+    @Override
+    public void close() {
+        ArrayList<Entry> idleEntries;
+        synchronized (this) {
+            if (this.isClosed) {
+                return;
+            }
+            this.isClosed = true;
+            idleEntries = new ArrayList<>(this.idleEntries);
+            this.idleEntries.clear();
+            this.notifyAll();
+        }
+        this.housekeeper.shutdownNow();
+        for (Entry entry: idleEntries) {
+            this.discard(entry);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.hirohiro716.database;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+
+import com.hirohiro716.RudeArray;
+import com.hirohiro716.StringConverter;
+
+/**
+ * キーセットページングで取得した1ページ分の検索結果を表すクラス。<br>
+ * 次のページは継続トークンに保持されている最終行の並び替えカラムの値を起点に検索する。<br>
+ * 継続トークンにはTimestampやBigDecimalを変換していない値が保持されるため、ナノ秒や小数の精度は失われない。
+ *
+ * @author hiro
+ *
+ */
+public class KeysetPage {
+
+    /**
+     * "継続トークンが不正です。" というエラーメッセージ用の文字列
+     */
+    public static final String ERROR_MESSAGE_INVALID_TOKEN = "継続トークンが不正です。";
+
+    /**
+     * コンストラクタ。
+     *
+     * @param rows 1ページ分の検索結果
+     * @param continuationToken 次のページを検索するための継続トークン
+     */
+    KeysetPage(RudeArray[] rows, String continuationToken) {
+        this.rows = rows;
+        this.continuationToken = continuationToken;
+    }
+
+    private RudeArray[] rows;
+
+    /**
+     * 1ページ分の検索結果を取得する。
+     *
+     * @return 検索結果
+     */
+    public RudeArray[] getRows() {
+        return this.rows;
+    }
+
+    private String continuationToken;
+
+    /**
+     * 次のページを検索するための継続トークンを取得する。
+     *
+     * @return 継続トークン(次のページがない場合はnull)
+     */
+    public String getContinuationToken() {
+        return this.continuationToken;
+    }
+
+    /**
+     * 次のページがあるかどうかを取得する。
+     *
+     * @return 結果
+     */
+    public boolean hasNext() {
+        return this.continuationToken != null;
+    }
+
+    /**
+     * 並び替えカラムの値から継続トークンを作成する。
+     *
+     * @param values 並び替えカラムの値
+     * @return 継続トークン
+     */
+    static String encodeToken(Object[] values) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        StringBuilder token = new StringBuilder();
+        for (Object value: values) {
+            if (token.length() > 0) {
+                token.append(".");
+            }
+            String type;
+            String string;
+            if (value == null) {
+                type = "N";
+                string = "";
+            } else if (value instanceof Timestamp) {
+                Timestamp timestamp = (Timestamp) value;
+                type = "P";
+                string = StringConverter.join(String.valueOf(Math.floorDiv(timestamp.getTime(), 1000) * 1000), ":", String.valueOf(timestamp.getNanos()));
+            } else if (value instanceof BigDecimal) {
+                type = "M";
+                string = value.toString();
+            } else if (value instanceof Date) {
+                type = "T";
+                string = String.valueOf(((Date) value).getTime());
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                type = "L";
+                string = value.toString();
+            } else if (value instanceof Number) {
+                type = "D";
+                string = String.valueOf(((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                type = "B";
+                string = value.toString();
+            } else {
+                type = "S";
+                string = value.toString();
+            }
+            token.append(type);
+            token.append(encoder.encodeToString(string.getBytes(StandardCharsets.UTF_8)));
+        }
+        return token.toString();
+    }
+
+    /**
+     * 継続トークンから並び替えカラムの値を復元する。
+     *
+     * @param token 継続トークン
+     * @param numberOfValues 並び替えカラムの数
+     * @return 並び替えカラムの値
+     * @throws SQLException 継続トークンが不正な場合
+     */
+    static Object[] decodeToken(String token, int numberOfValues) throws SQLException {
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != numberOfValues) {
+            throw new SQLException(ERROR_MESSAGE_INVALID_TOKEN);
+        }
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        Object[] values = new Object[numberOfValues];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i].length() == 0) {
+                    throw new SQLException(ERROR_MESSAGE_INVALID_TOKEN);
+                }
+                String string = new String(decoder.decode(parts[i].substring(1)), StandardCharsets.UTF_8);
+                switch (parts[i].charAt(0)) {
+                case 'N':
+                    values[i] = null;
+                    break;
+                case 'T':
+                    values[i] = new Date(Long.parseLong(string));
+                    break;
+                case 'P':
+                    int separatorIndex = string.indexOf(":");
+                    if (separatorIndex < 0) {
+                        throw new SQLException(ERROR_MESSAGE_INVALID_TOKEN);
+                    }
+                    Timestamp timestamp = new Timestamp(Long.parseLong(string.substring(0, separatorIndex)));
+                    timestamp.setNanos(Integer.parseInt(string.substring(separatorIndex + 1)));
+                    values[i] = timestamp;
+                    break;
+                case 'M':
+                    values[i] = new BigDecimal(string);
+                    break;
+                case 'L':
+                    values[i] = Long.parseLong(string);
+                    break;
+                case 'D':
+                    values[i] = Double.parseDouble(string);
+                    break;
+                case 'B':
+                    values[i] = Boolean.parseBoolean(string);
+                    break;
+                case 'S':
+                    values[i] = string;
+                    break;
+                default:
+                    throw new SQLException(ERROR_MESSAGE_INVALID_TOKEN);
+                }
+            }
+        } catch (IllegalArgumentException exception) {
+            throw new SQLException(ERROR_MESSAGE_INVALID_TOKEN, exception);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,161 @@
+package com.hirohiro716.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 処理時間の分布を集計するクラス。複数のスレッドから同時に記録できる。
+ *
+ * @author hiro
+ *
+ */
+public class LatencyHistogram {
+
+    /**
+     * 既定の区間の上限(ミリ秒)。
+     */
+    public static final long[] DEFAULT_BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    /**
+     * 既定の区間で集計するコンストラクタ。
+     */
+    public LatencyHistogram() {
+        this(DEFAULT_BOUNDS);
+    }
+
+    /**
+     * 区間の上限(ミリ秒)を指定するコンストラクタ。最後の区間より遅いものは超過区間に集計される。
+     *
+     * @param bounds 昇順に並んだ区間の上限(ミリ秒)
+     */
+    public LatencyHistogram(long[] bounds) {
+        this.bounds = bounds.clone();
+        this.counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    private long[] bounds;
+
+    /**
+     * 区間の上限(ミリ秒)を取得する。
+     *
+     * @return 区間の上限
+     */
+    public long[] getBounds() {
+        return this.bounds.clone();
+    }
+
+    private AtomicLongArray counts;
+
+    private AtomicLong totalCount = new AtomicLong();
+
+    private AtomicLong totalNanos = new AtomicLong();
+
+    private AtomicLong maximumNanos = new AtomicLong();
+
+    /**
+     * 処理時間を記録する。
+     *
+     * @param nanos 処理時間(ナノ秒)
+     */
+    public void record(long nanos) {
+        long millis = nanos / 1000000;
+        int index = 0;
+        while (index < this.bounds.length && this.bounds[index] < millis) {
+            index++;
+        }
+        this.counts.incrementAndGet(index);
+        this.totalCount.incrementAndGet();
+        this.totalNanos.addAndGet(nanos);
+        long maximum = this.maximumNanos.get();
+        while (maximum < nanos && this.maximumNanos.compareAndSet(maximum, nanos) == false) {
+            maximum = this.maximumNanos.get();
+        }
+    }
+
+    /**
+     * 区間ごとの件数を取得する。最後の要素は最後の区間を超過した件数。
+     *
+     * @return 区間ごとの件数
+     */
+    public long[] getCounts() {
+        long[] counts = new long[this.counts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.counts.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * 記録した件数を取得する。
+     *
+     * @return 件数
+     */
+    public long getTotalCount() {
+        return this.totalCount.get();
+    }
+
+    /**
+     * 記録した処理時間の平均をミリ秒で取得する。
+     *
+     * @return 平均(ミリ秒)
+     */
+    public double getAverageMillis() {
+        long count = this.totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return this.totalNanos.get() / 1000000d / count;
+    }
+
+    /**
+     * 記録した処理時間の最大をミリ秒で取得する。
+     *
+     * @return 最大(ミリ秒)
+     */
+    public double getMaximumMillis() {
+        return this.maximumNanos.get() / 1000000d;
+    }
+
+    /**
+     * 指定した割合の件数が収まる区間の上限をミリ秒で取得する。超過区間に該当する場合は最大値を返す。
+     *
+     * @param percentile 割合(0から100)
+     * @return 区間の上限(ミリ秒)
+     */
+    public double getPercentileMillis(double percentile) {
+        long count = this.totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(count * percentile / 100);
+        long accumulation = 0;
+        for (int i = 0; i < this.bounds.length; i++) {
+            accumulation += this.counts.get(i);
+            if (accumulation >= threshold) {
+                return this.bounds[i];
+            }
+        }
+        return this.getMaximumMillis();
+    }
+
+    /**
+     * 記録した内容を破棄する。
+     */
+    public void clear() {
+        for (int i = 0; i < this.counts.length(); i++) {
+            this.counts.set(i, 0);
+        }
+        this.totalCount.set(0);
+        this.totalNanos.set(0);
+        this.maximumNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("count=");
+        builder.append(this.getTotalCount());
+        builder.append(String.format(" avg=%.3fms p50=%.0fms p95=%.0fms p99=%.0fms max=%.3fms", this.getAverageMillis(), this.getPercentileMillis(50), this.getPercentileMillis(95), this.getPercentileMillis(99), this.getMaximumMillis()));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,482 @@
+package com.hirohiro716.database;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.hirohiro716.RudeArray;
+import com.hirohiro716.StringConverter;
+import com.hirohiro716.database.AbstractDatabase.RowProcessor;
+import com.hirohiro716.database.AsyncDatabaseExecutor.DatabaseWork;
+import com.hirohiro716.database.WhereSet.Comparison;
+
+/**
+ * テーブルを数値や日時のカラムの範囲で分割し、別々の接続で並行して検索するクラス。<br>
+ * SQLiteではカラムにrowidを指定できる。
+ *
+ * @author hiro
+ *
+ * @param <D> データベースクラス
+ */
+public class PartitionedScan<D extends AbstractDatabase> {
+
+    /**
+     * コンストラクタ。
+     *
+     * @param executor 検索を並行して実行するインスタンス
+     * @param tableName テーブル名
+     * @param keyColumn 範囲の分割に使用する数値または日時のカラム
+     */
+    public PartitionedScan(AsyncDatabaseExecutor<D> executor, String tableName, String keyColumn) {
+        this.executor = executor;
+        this.tableName = tableName;
+        this.keyColumn = keyColumn;
+    }
+
+    private AsyncDatabaseExecutor<D> executor;
+
+    private String tableName;
+
+    private String keyColumn;
+
+    private int numberOfPartitions = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 分割数を取得する。
+     *
+     * @return 分割数
+     */
+    public int getNumberOfPartitions() {
+        return this.numberOfPartitions;
+    }
+
+    /**
+     * 分割数を設定する。初期値は利用できるプロセッサ数。
+     *
+     * @param numberOfPartitions 分割数
+     */
+    public void setNumberOfPartitions(int numberOfPartitions) {
+        this.numberOfPartitions = Math.max(numberOfPartitions, 1);
+    }
+
+    private boolean isOrdered = true;
+
+    /**
+     * 分割したそれぞれの検索結果をカラムの昇順に並べ替えるかどうかを取得する。
+     *
+     * @return 結果
+     */
+    public boolean isOrdered() {
+        return this.isOrdered;
+    }
+
+    /**
+     * 分割したそれぞれの検索結果をカラムの昇順に並べ替えるかどうかを設定する。初期値はtrue。
+     *
+     * @param isOrdered
+     */
+    public void setOrdered(boolean isOrdered) {
+        this.isOrdered = isOrdered;
+    }
+
+    private int queueCapacity = 1000;
+
+    /**
+     * fetchRowsEachメソッドで検索済みのレコードを処理されるまで保持する最大数を取得する。
+     *
+     * @return 最大数
+     */
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    /**
+     * fetchRowsEachメソッドで検索済みのレコードを処理されるまで保持する最大数を設定する。初期値は1000。<br>
+     * 保持しているレコードが最大数に達すると、各分割の検索はレコードが処理されるまで待機する。
+     *
+     * @param queueCapacity 最大数
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(queueCapacity, 1);
+    }
+
+    /**
+     * 分割した範囲の検索SQLとパラメータ。
+     *
+     * @author hiro
+     */
+    private static class Partition {
+
+        /**
+         * コンストラクタ。
+         *
+         * @param sql 検索SQL
+         * @param params パラメータ
+         */
+        private Partition(String sql, Object[] params) {
+            this.sql = sql;
+            this.params = params;
+        }
+
+        private String sql;
+
+        private Object[] params;
+    }
+
+    /**
+     * 検索条件に該当するレコードの範囲をカラムの最小値と最大値から求めて分割検索する。<br>
+     * 結果はカラムの昇順に分割した順で結合される。
+     *
+     * @param whereSet 検索条件(nullの場合は全レコード)
+     * @return 検索結果
+     * @throws SQLException
+     */
+    public RudeArray[] fetchRows(WhereSet whereSet) throws SQLException {
+        ArrayList<RudeArray> rows = new ArrayList<>();
+        for (CompletableFuture<RudeArray[]> future: this.submitPartitions(this.createPartitions(whereSet))) {
+            for (RudeArray row: join(future)) {
+                rows.add(row);
+            }
+        }
+        return rows.toArray(new RudeArray[rows.size()]);
+    }
+
+    /**
+     * 検索条件に該当するレコードの範囲をカラムの最小値と最大値から求めて分割検索し、取得したレコードから順に1行ずつ処理する。<br>
+     * 各分割はそれぞれの接続で検索結果を全件保持せずに読み込み、保持するレコードの最大数を超えないように処理を待機する。
+     * 分割をまたいだレコードの順序は保証されない。<br>
+     * 処理は呼び出し元のスレッドで行われるため、RowProcessorはスレッドセーフである必要はない。
+     *
+     * @param whereSet 検索条件(nullの場合は全レコード)
+     * @param processor レコードを処理するインスタンス
+     * @return 処理したレコード数
+     * @throws SQLException
+     */
+    public long fetchRowsEach(WhereSet whereSet, RowProcessor processor) throws SQLException {
+        ArrayList<Partition> partitions = this.createPartitions(whereSet);
+        ArrayBlockingQueue<Object> queue = new ArrayBlockingQueue<>(this.queueCapacity);
+        AtomicBoolean isStopped = new AtomicBoolean(false);
+        ArrayList<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < partitions.size(); i++) {
+            Partition partition = partitions.get(i);
+            Integer partitionIndex = i;
+            futures.add(this.executor.submit(new DatabaseWork<D, Long>() {
+
+                @Override
+                public Long run(D database) throws Exception {
+                    try {
+                        return database.fetchRowsEach(partition.sql, partition.params, new RowProcessor() {
+
+                            @Override
+                            public boolean process(RudeArray row) throws Exception {
+                                return offer(queue, row, isStopped);
+                            }
+                        });
+                    } finally {
+                        offer(queue, partitionIndex, isStopped);
+                    }
+                }
+            }));
+        }
+        long numberOfRows = 0;
+        int numberOfFinishedPartitions = 0;
+        try {
+            while (numberOfFinishedPartitions < futures.size()) {
+                Object item;
+                try {
+                    item = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException(exception);
+                }
+                if (item == null) {
+                    for (CompletableFuture<Long> future: futures) {
+                        if (future.isCompletedExceptionally()) {
+                            join(future);
+                        }
+                    }
+                    continue;
+                }
+                if (item instanceof Integer) {
+                    join(futures.get((Integer) item));
+                    numberOfFinishedPartitions++;
+                    continue;
+                }
+                numberOfRows++;
+                try {
+                    if (processor.process((RudeArray) item) == false) {
+                        return numberOfRows;
+                    }
+                } catch (SQLException exception) {
+                    throw exception;
+                } catch (Exception exception) {
+                    throw new SQLException(exception);
+                }
+            }
+        } finally {
+            isStopped.set(true);
+            for (CompletableFuture<Long> future: futures) {
+                future.cancel(true);
+            }
+        }
+        return numberOfRows;
+    }
+
+    /**
+     * 処理が中止されていない間、キューに空きができるのを待機して要素を追加する。
+     *
+     * @param queue キュー
+     * @param item 追加する要素
+     * @param isStopped 処理が中止されたかどうか
+     * @return 追加できた場合はtrue
+     * @throws InterruptedException
+     */
+    private static boolean offer(ArrayBlockingQueue<Object> queue, Object item, AtomicBoolean isStopped) throws InterruptedException {
+        while (isStopped.get() == false) {
+            if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 数値の範囲を指定して分割検索する。結果はカラムの昇順に分割した順で結合される。
+     *
+     * @param whereSet 検索条件(nullの場合は全レコード)
+     * @param minimum 範囲の最小値
+     * @param maximum 範囲の最大値
+     * @return 検索結果
+     * @throws SQLException
+     */
+    public RudeArray[] fetchRows(WhereSet whereSet, long minimum, long maximum) throws SQLException {
+        ArrayList<RudeArray> rows = new ArrayList<>();
+        for (CompletableFuture<RudeArray[]> future: this.submitPartitions(this.createPartitions(whereSet, minimum, maximum, false, false))) {
+            for (RudeArray row: join(future)) {
+                rows.add(row);
+            }
+        }
+        return rows.toArray(new RudeArray[rows.size()]);
+    }
+
+    /**
+     * 日時の範囲を指定して分割検索する。結果はカラムの昇順に分割した順で結合される。
+     *
+     * @param whereSet 検索条件(nullの場合は全レコード)
+     * @param minimum 範囲の最小値
+     * @param maximum 範囲の最大値
+     * @return 検索結果
+     * @throws SQLException
+     */
+    public RudeArray[] fetchRows(WhereSet whereSet, Date minimum, Date maximum) throws SQLException {
+        ArrayList<RudeArray> rows = new ArrayList<>();
+        for (CompletableFuture<RudeArray[]> future: this.submitPartitions(this.createPartitions(whereSet, minimum.getTime(), maximum.getTime(), true, false))) {
+            for (RudeArray row: join(future)) {
+                rows.add(row);
+            }
+        }
+        return rows.toArray(new RudeArray[rows.size()]);
+    }
+
+    /**
+     * 分割ごとの検索を開始する。
+     *
+     * @param partitions 分割した範囲
+     * @return 分割ごとの検索結果
+     */
+    private ArrayList<CompletableFuture<RudeArray[]>> submitPartitions(ArrayList<Partition> partitions) {
+        ArrayList<CompletableFuture<RudeArray[]>> futures = new ArrayList<>();
+        for (Partition partition: partitions) {
+            futures.add(this.executor.fetchRowsAsync(partition.sql, partition.params));
+        }
+        return futures;
+    }
+
+    /**
+     * カラムの最小値と最大値を取得して範囲を分割する。<br>
+     * 最小値と最大値は変換していない値で取得し、最初の分割の下限と最後の分割の上限は検索条件に含めない。
+     * そのため、ミリ秒より細かい日時や倍精度浮動小数点数で表せない整数のカラムでも、範囲の端のレコードが除外されない。
+     *
+     * @param whereSet 検索条件
+     * @return 分割した範囲
+     * @throws SQLException
+     */
+    private ArrayList<Partition> createPartitions(WhereSet whereSet) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT MIN(");
+        sql.append(this.keyColumn);
+        sql.append(") AS minimum, MAX(");
+        sql.append(this.keyColumn);
+        sql.append(") AS maximum FROM ");
+        sql.append(this.tableName);
+        Object[] params = new Object[] {};
+        if (whereSet != null && whereSet.size() > 0) {
+            sql.append(" WHERE ");
+            sql.append(whereSet.buildParameterClause());
+            params = whereSet.buildParameters();
+        }
+        sql.append(";");
+        String rangeSQL = sql.toString();
+        Object[] rangeParams = params;
+        Object[] range = join(this.executor.submit(new DatabaseWork<D, Object[]>() {
+
+            @Override
+            public Object[] run(D database) throws Exception {
+                ArrayList<Object[]> rawValues = new ArrayList<>();
+                database.fetchRows(rangeSQL, rangeParams, new String[] {"minimum", "maximum"}, rawValues);
+                return rawValues.get(0);
+            }
+        }));
+        Object minimum = range[0];
+        Object maximum = range[1];
+        if (minimum == null || maximum == null) {
+            return new ArrayList<>();
+        }
+        if (minimum instanceof Date && maximum instanceof Date) {
+            return this.createPartitions(whereSet, ((Date) minimum).getTime(), ((Date) maximum).getTime(), true, true);
+        }
+        Long minimumLong = toLong(minimum, false);
+        Long maximumLong = toLong(maximum, true);
+        if (minimumLong == null || maximumLong == null) {
+            throw new SQLException(StringConverter.join(this.keyColumn, " is not a numeric or date column."));
+        }
+        return this.createPartitions(whereSet, minimumLong, maximumLong, false, true);
+    }
+
+    /**
+     * 範囲を分割する。範囲の幅がlongの範囲を超える場合でも桁あふれしないように計算する。
+     *
+     * @param whereSet 検索条件
+     * @param minimum 範囲の最小値
+     * @param maximum 範囲の最大値
+     * @param isDate 日時の範囲かどうか
+     * @param isOpenEnded 最初の分割の下限と最後の分割の上限を検索条件に含めないかどうか
+     * @return 分割した範囲
+     */
+    private ArrayList<Partition> createPartitions(WhereSet whereSet, long minimum, long maximum, boolean isDate, boolean isOpenEnded) {
+        ArrayList<Partition> partitions = new ArrayList<>();
+        BigInteger span = BigInteger.valueOf(maximum).subtract(BigInteger.valueOf(minimum)).add(BigInteger.ONE);
+        int numberOfPartitions = 1;
+        if (span.signum() > 0) {
+            numberOfPartitions = span.min(BigInteger.valueOf(this.numberOfPartitions)).intValue();
+        }
+        BigInteger size = span.divide(BigInteger.valueOf(numberOfPartitions));
+        long lower = minimum;
+        for (int i = 0; i < numberOfPartitions; i++) {
+            boolean isLast = i == numberOfPartitions - 1;
+            long upper = maximum;
+            if (isLast == false) {
+                upper = BigInteger.valueOf(lower).add(size).longValue();
+            }
+            WhereSet partitionWhereSet;
+            if (whereSet == null) {
+                partitionWhereSet = new WhereSet();
+            } else {
+                partitionWhereSet = whereSet.clone();
+            }
+            if (i > 0 || isOpenEnded == false) {
+                partitionWhereSet.add(this.keyColumn, Comparison.GREATER_EQUAL, toKeyValue(lower, isDate));
+            }
+            if (isLast == false) {
+                partitionWhereSet.add(this.keyColumn, Comparison.LESS, toKeyValue(upper, isDate));
+            } else if (isOpenEnded == false) {
+                partitionWhereSet.add(this.keyColumn, Comparison.LESS_EQUAL, toKeyValue(maximum, isDate));
+            }
+            StringBuilder sql = new StringBuilder("SELECT * FROM ");
+            sql.append(this.tableName);
+            if (partitionWhereSet.size() > 0) {
+                sql.append(" WHERE ");
+                sql.append(partitionWhereSet.buildParameterClause());
+            }
+            if (this.isOrdered) {
+                sql.append(" ORDER BY ");
+                sql.append(this.keyColumn);
+            }
+            sql.append(";");
+            partitions.add(new Partition(sql.toString(), partitionWhereSet.buildParameters()));
+            lower = upper;
+        }
+        return partitions;
+    }
+
+    /**
+     * 範囲の境界値を検索に使用する値に変換する。
+     *
+     * @param value 境界値
+     * @param isDate 日時の範囲かどうか
+     * @return 検索に使用する値
+     */
+    private static Object toKeyValue(long value, boolean isDate) {
+        if (isDate) {
+            return new Date(value);
+        }
+        return value;
+    }
+
+    /**
+     * 最小値や最大値をlongに変換する。整数型の値は丸めずに変換し、longの範囲を超える値はlongの最小値か最大値にする。
+     *
+     * @param value 値
+     * @param isCeiling 小数を切り上げるかどうか
+     * @return 変換した値(変換できない場合はnull)
+     */
+    private static Long toLong(Object value, boolean isCeiling) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigDecimal) {
+            RoundingMode roundingMode = RoundingMode.FLOOR;
+            if (isCeiling) {
+                roundingMode = RoundingMode.CEILING;
+            }
+            value = ((BigDecimal) value).setScale(0, roundingMode).toBigInteger();
+        }
+        if (value instanceof BigInteger) {
+            BigInteger bigInteger = (BigInteger) value;
+            if (bigInteger.compareTo(BigInteger.valueOf(Long.MAX_VALUE)) > 0) {
+                return Long.MAX_VALUE;
+            }
+            if (bigInteger.compareTo(BigInteger.valueOf(Long.MIN_VALUE)) < 0) {
+                return Long.MIN_VALUE;
+            }
+            return bigInteger.longValue();
+        }
+        if (value instanceof Number) {
+            double doubleValue = ((Number) value).doubleValue();
+            if (isCeiling) {
+                return (long) Math.ceil(doubleValue);
+            }
+            return (long) Math.floor(doubleValue);
+        }
+        return StringConverter.stringToLong(value.toString());
+    }
+
+    /**
+     * 検索の終了を待機して結果を取得する。
+     *
+     * @param <T> 結果の型
+     * @param future 検索結果
+     * @return 結果
+     * @throws SQLException
+     */
+    private static <T> T join(CompletableFuture<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof SQLException) {
+                throw (SQLException) exception.getCause();
+            }
+            throw new SQLException(exception.getCause());
+        }
+    }
+}
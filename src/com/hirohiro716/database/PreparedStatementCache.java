@@ -0,0 +1,233 @@
+package com.hirohiro716.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SQLごとにプリペアードステートメントを保持して使い回すクラス。<br>
+ * 保持数が上限を超えた場合は最も長く使用されていないものから閉じられる。
+ *
+ * @author hiro
+ *
+ */
+class PreparedStatementCache {
+
+    /**
+     * コンストラクタ。
+     *
+     * @param capacity 保持するステートメントの上限数
+     */
+    PreparedStatementCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    private int capacity;
+
+    /**
+     * 保持するステートメントの上限数を取得する。
+     *
+     * @return 上限数
+     */
+    int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * 保持するステートメントの上限数を設定する。上限を超えているステートメントは閉じられる。
+     *
+     * @param capacity 上限数(0以下の場合は使い回さない)
+     */
+    void setCapacity(int capacity) {
+        this.capacity = capacity;
+        this.evict();
+    }
+
+    /**
+     * ステートメントを特定するキー。
+     *
+     * @author hiro
+     */
+    private static class Key {
+
+        private String sql;
+
+        private int resultSetType;
+
+        private int resultSetConcurrency;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param sql SQL
+         * @param resultSetType 結果セットのタイプ
+         * @param resultSetConcurrency 結果セットの並行処理モード
+         */
+        private Key(String sql, int resultSetType, int resultSetConcurrency) {
+            this.sql = sql;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.sql.hashCode() * 31 + this.resultSetType) * 31 + this.resultSetConcurrency;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (object instanceof Key == false) {
+                return false;
+            }
+            Key key = (Key) object;
+            return this.resultSetType == key.resultSetType && this.resultSetConcurrency == key.resultSetConcurrency && this.sql.equals(key.sql);
+        }
+    }
+
+    /**
+     * 保持しているステートメントの情報。
+     *
+     * @author hiro
+     */
+    private static class Entry {
+
+        private PreparedStatement statement;
+
+        private boolean isUsing = false;
+
+        private boolean isCached = true;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param statement ステートメント
+         */
+        private Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private IdentityHashMap<PreparedStatement, Entry> usingEntries = new IdentityHashMap<>();
+
+    private long hitCount = 0;
+
+    /**
+     * 保持しているステートメントを使い回した回数を取得する。
+     *
+     * @return 回数
+     */
+    long getHitCount() {
+        return this.hitCount;
+    }
+
+    private long missCount = 0;
+
+    /**
+     * ステートメントを新しく作成した回数を取得する。
+     *
+     * @return 回数
+     */
+    long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * SQLに対するステートメントを取得する。保持していない場合や使用中の場合は新しく作成する。<br>
+     * 取得したステートメントは使用後に必ずreleaseメソッドに渡す。
+     *
+     * @param connection コネクション
+     * @param sql SQL
+     * @param resultSetType 結果セットのタイプ
+     * @param resultSetConcurrency 結果セットの並行処理モード
+     * @return ステートメント
+     * @throws SQLException
+     */
+    PreparedStatement acquire(Connection connection, String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        Key key = new Key(sql, resultSetType, resultSetConcurrency);
+        Entry entry = this.entries.get(key);
+        if (entry != null && entry.isUsing == false) {
+            this.hitCount++;
+            entry.statement.clearParameters();
+        } else {
+            this.missCount++;
+            PreparedStatement statement = connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+            if (entry != null || this.capacity <= 0) {
+                return statement;
+            }
+            entry = new Entry(statement);
+            this.entries.put(key, entry);
+            this.evict();
+        }
+        entry.isUsing = true;
+        this.usingEntries.put(entry.statement, entry);
+        return entry.statement;
+    }
+
+    /**
+     * 使用が終わったステートメントを返却する。保持していないステートメントは閉じられる。
+     *
+     * @param statement ステートメント
+     */
+    void release(PreparedStatement statement) {
+        Entry entry = this.usingEntries.remove(statement);
+        if (entry != null) {
+            entry.isUsing = false;
+            if (entry.isCached) {
+                return;
+            }
+        }
+        close(statement);
+    }
+
+    /**
+     * 上限を超えているステートメントを古いものから取り除く。
+     */
+    private void evict() {
+        Iterator<Map.Entry<Key, Entry>> iterator = this.entries.entrySet().iterator();
+        while (this.entries.size() > Math.max(this.capacity, 0) && iterator.hasNext()) {
+            this.remove(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 保持しているステートメントをすべて破棄する。使用中のステートメントは返却された時点で閉じられる。
+     */
+    void clear() {
+        for (Entry entry: this.entries.values()) {
+            this.remove(entry);
+        }
+        this.entries.clear();
+    }
+
+    /**
+     * 保持をやめたステートメントを閉じる。使用中の場合は返却時に閉じる。
+     *
+     * @param entry ステートメントの情報
+     */
+    private void remove(Entry entry) {
+        entry.isCached = false;
+        if (entry.isUsing == false) {
+            close(entry.statement);
+        }
+    }
+
+    /**
+     * ステートメントを閉じる。
+     *
+     * @param statement ステートメント
+     */
+    private static void close(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException exception) {
+            // nop
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.hirohiro716.database;
+
+import java.util.regex.Pattern;
+
+/**
+ * AbstractDatabaseで実行されたSQLの実行結果と処理時間の内訳を表すクラス。
+ *
+ * @author hiro
+ *
+ */
+public class QueryEvent {
+
+    /**
+     * コンストラクタ。
+     *
+     * @param sql SQL
+     * @param parameterCount パラメータの数
+     * @param numberOfRows 取得または更新したレコード数
+     * @param prepareNanos ステートメントの準備にかかった時間(ナノ秒)
+     * @param executeNanos SQLの実行にかかった時間(ナノ秒)
+     * @param fetchNanos 結果の読み込みにかかった時間(ナノ秒)
+     * @param connectionId 接続の識別子
+     * @param exception 発生した例外
+     */
+    QueryEvent(String sql, int parameterCount, long numberOfRows, long prepareNanos, long executeNanos, long fetchNanos, String connectionId, Throwable exception) {
+        this.sql = sql;
+        this.parameterCount = parameterCount;
+        this.numberOfRows = numberOfRows;
+        this.prepareNanos = prepareNanos;
+        this.executeNanos = executeNanos;
+        this.fetchNanos = fetchNanos;
+        this.connectionId = connectionId;
+        this.exception = exception;
+    }
+
+    private String sql;
+
+    /**
+     * 実行したSQLを取得する。
+     *
+     * @return SQL
+     */
+    public String getSql() {
+        return this.sql;
+    }
+
+    private String shape = null;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+
+    /**
+     * SQLに直接記述された文字列や数値を「?」に置き換えたSQLの構成を取得する。<br>
+     * 値だけが異なるSQLを同じものとして集計するために使用する。
+     *
+     * @return SQLの構成
+     */
+    public String getShape() {
+        if (this.shape == null) {
+            String shape = STRING_LITERAL.matcher(this.sql).replaceAll("?");
+            this.shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        }
+        return this.shape;
+    }
+
+    private int parameterCount;
+
+    /**
+     * パラメータの数を取得する。
+     *
+     * @return パラメータの数
+     */
+    public int getParameterCount() {
+        return this.parameterCount;
+    }
+
+    private long numberOfRows;
+
+    /**
+     * 取得または更新したレコード数を取得する。
+     *
+     * @return レコード数(不明な場合は-1)
+     */
+    public long getNumberOfRows() {
+        return this.numberOfRows;
+    }
+
+    private long prepareNanos;
+
+    /**
+     * ステートメントの準備にかかった時間を取得する。
+     *
+     * @return 時間(ナノ秒)
+     */
+    public long getPrepareNanos() {
+        return this.prepareNanos;
+    }
+
+    private long executeNanos;
+
+    /**
+     * SQLの実行にかかった時間を取得する。
+     *
+     * @return 時間(ナノ秒)
+     */
+    public long getExecuteNanos() {
+        return this.executeNanos;
+    }
+
+    private long fetchNanos;
+
+    /**
+     * 結果の読み込みにかかった時間を取得する。1行ずつ処理するメソッドでは行の処理時間を含む。
+     *
+     * @return 時間(ナノ秒)
+     */
+    public long getFetchNanos() {
+        return this.fetchNanos;
+    }
+
+    /**
+     * 全体の処理時間を取得する。
+     *
+     * @return 時間(ナノ秒)
+     */
+    public long getTotalNanos() {
+        return this.prepareNanos + this.executeNanos + this.fetchNanos;
+    }
+
+    private String connectionId;
+
+    /**
+     * SQLを実行した接続の識別子を取得する。
+     *
+     * @return 識別子
+     */
+    public String getConnectionId() {
+        return this.connectionId;
+    }
+
+    private Throwable exception;
+
+    /**
+     * SQLの実行で発生した例外を取得する。
+     *
+     * @return 例外(成功した場合はnull)
+     */
+    public Throwable getException() {
+        return this.exception;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%.3fms (prepare=%.3fms execute=%.3fms fetch=%.3fms) rows=%d params=%d connection=%s", this.getTotalNanos() / 1000000d, this.prepareNanos / 1000000d, this.executeNanos / 1000000d, this.fetchNanos / 1000000d, this.numberOfRows, this.parameterCount, this.connectionId));
+        if (this.exception != null) {
+            builder.append(" error=");
+            builder.append(this.exception.getMessage());
+        }
+        builder.append(" ");
+        builder.append(this.sql);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,18 @@
+package com.hirohiro716.database;
+
+/**
+ * AbstractDatabaseで実行されたSQLの通知を受け取るインターフェース。<br>
+ * SQLを実行したスレッドから呼び出されるため、時間のかかる処理は行わない。
+ *
+ * @author hiro
+ *
+ */
+public interface QueryListener {
+
+    /**
+     * SQLの実行が終了した時に呼び出される。失敗した場合も呼び出される。
+     *
+     * @param event 実行結果
+     */
+    public void queryExecuted(QueryEvent event);
+}
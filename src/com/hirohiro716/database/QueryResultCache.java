@@ -0,0 +1,285 @@
+package com.hirohiro716.database;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hirohiro716.RudeArray;
+
+/**
+ * AbstractBindTableの検索結果をテーブル名・検索条件・オプション句ごとに保持するキャッシュ。<br>
+ * 保持する件数と有効期間の上限を持ち、同じキャッシュを設定したデータベースオブジェクトでテーブルを更新すると、そのテーブルの検索結果は破棄される。<br>
+ * 複数のデータベースオブジェクトで共有できる。
+ *
+ * @author hiro
+ *
+ */
+public class QueryResultCache {
+
+    /**
+     * コンストラクタ。
+     *
+     * @param maximumSize 保持する検索結果の最大数
+     * @param timeToLiveMillis 検索結果の有効期間(ミリ秒、0以下の場合は無期限)
+     */
+    public QueryResultCache(int maximumSize, long timeToLiveMillis) {
+        this.maximumSize = Math.max(maximumSize, 1);
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    private int maximumSize;
+
+    /**
+     * 保持する検索結果の最大数を取得する。
+     *
+     * @return 最大数
+     */
+    public int getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    private long timeToLiveMillis;
+
+    /**
+     * 検索結果の有効期間を取得する。
+     *
+     * @return 有効期間(ミリ秒、0以下の場合は無期限)
+     */
+    public long getTimeToLiveMillis() {
+        return this.timeToLiveMillis;
+    }
+
+    /**
+     * 保持している検索結果。
+     *
+     * @author hiro
+     */
+    private static class CachedResult {
+
+        /**
+         * コンストラクタ。
+         *
+         * @param tableName テーブル名
+         * @param rows 検索結果
+         * @param expirationTime 有効期限(System.nanoTimeの値、無期限の場合はLong.MAX_VALUE)
+         */
+        private CachedResult(String tableName, RudeArray[] rows, long expirationTime) {
+            this.tableName = tableName;
+            this.rows = rows;
+            this.expirationTime = expirationTime;
+        }
+
+        private String tableName;
+
+        private RudeArray[] rows;
+
+        private long expirationTime;
+    }
+
+    private LinkedHashMap<List<Object>, CachedResult> results = new LinkedHashMap<List<Object>, CachedResult>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedResult> eldest) {
+            if (this.size() > QueryResultCache.this.maximumSize) {
+                QueryResultCache.this.evictionCount++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private HashMap<String, Long> versions = new HashMap<>();
+
+    private long lastVersion = 0;
+
+    private long clearedVersion = 0;
+
+    private long hitCount = 0;
+
+    private long missCount = 0;
+
+    private long evictionCount = 0;
+
+    /**
+     * テーブル名を大文字小文字を区別しない形式に変換する。
+     *
+     * @param tableName テーブル名
+     * @return 変換したテーブル名
+     */
+    private static String normalizeTableName(String tableName) {
+        return tableName.toLowerCase();
+    }
+
+    /**
+     * 検索結果を特定するキーを作成する。
+     *
+     * @param tableName テーブル名
+     * @param sql 検索SQL
+     * @param params パラメータ
+     * @return キー
+     */
+    private static List<Object> createKey(String tableName, String sql, Object[] params) {
+        return Arrays.asList(normalizeTableName(tableName), sql, Arrays.asList(params.clone()));
+    }
+
+    /**
+     * 検索結果の連想配列を複製する。キャッシュの内容が呼び出し元で変更されないようにするために使用する。
+     *
+     * @param rows 検索結果
+     * @return 複製した検索結果
+     */
+    private static RudeArray[] copyRows(RudeArray[] rows) {
+        RudeArray[] copiedRows = new RudeArray[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            copiedRows[i] = rows[i].clone();
+        }
+        return copiedRows;
+    }
+
+    /**
+     * テーブルのバージョンを取得する。バージョンはテーブルの検索結果が破棄されるたびに加算される。
+     *
+     * @param tableName テーブル名
+     * @return バージョン
+     */
+    public synchronized long getVersion(String tableName) {
+        Long version = this.versions.get(normalizeTableName(tableName));
+        if (version == null || version < this.clearedVersion) {
+            return this.clearedVersion;
+        }
+        return version;
+    }
+
+    /**
+     * 保持している有効な検索結果の複製を取得する。
+     *
+     * @param tableName テーブル名
+     * @param sql 検索SQL
+     * @param params パラメータ
+     * @return 検索結果(保持していない場合はnull)
+     */
+    public synchronized RudeArray[] get(String tableName, String sql, Object[] params) {
+        List<Object> key = createKey(tableName, sql, params);
+        CachedResult result = this.results.get(key);
+        if (result != null && result.expirationTime - System.nanoTime() < 0) {
+            this.results.remove(key);
+            result = null;
+        }
+        if (result == null) {
+            this.missCount++;
+            return null;
+        }
+        this.hitCount++;
+        return copyRows(result.rows);
+    }
+
+    /**
+     * 検索結果を保持する。検索前に取得したバージョンからテーブルが更新されている場合は保持しない。
+     *
+     * @param tableName テーブル名
+     * @param sql 検索SQL
+     * @param params パラメータ
+     * @param rows 検索結果
+     * @param version 検索前にgetVersionメソッドで取得したバージョン
+     */
+    public synchronized void put(String tableName, String sql, Object[] params, RudeArray[] rows, long version) {
+        if (this.getVersion(tableName) != version) {
+            return;
+        }
+        long expirationTime = Long.MAX_VALUE;
+        if (this.timeToLiveMillis > 0) {
+            expirationTime = System.nanoTime() + this.timeToLiveMillis * 1000000L;
+        }
+        this.results.put(createKey(tableName, sql, params), new CachedResult(normalizeTableName(tableName), copyRows(rows), expirationTime));
+    }
+
+    /**
+     * テーブルの検索結果をすべて破棄する。
+     *
+     * @param tableName テーブル名
+     */
+    public synchronized void invalidate(String tableName) {
+        String normalizedTableName = normalizeTableName(tableName);
+        this.lastVersion++;
+        this.versions.put(normalizedTableName, this.lastVersion);
+        Iterator<CachedResult> iterator = this.results.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().tableName.equals(normalizedTableName)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * すべての検索結果を破棄する。
+     */
+    public synchronized void clear() {
+        this.lastVersion++;
+        this.clearedVersion = this.lastVersion;
+        this.versions.clear();
+        this.results.clear();
+    }
+
+    /**
+     * 保持している検索結果の数を取得する。
+     *
+     * @return 検索結果の数
+     */
+    public synchronized int size() {
+        return this.results.size();
+    }
+
+    /**
+     * 検索結果を取得できた回数を取得する。
+     *
+     * @return 回数
+     */
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * 検索結果を取得できなかった回数を取得する。
+     *
+     * @return 回数
+     */
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * 最大数を超えたために破棄した検索結果の数を取得する。
+     *
+     * @return 検索結果の数
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * 検索結果を取得できた割合を取得する。
+     *
+     * @return 割合(0から1、取得の要求がない場合は0)
+     */
+    public synchronized double getHitRate() {
+        long requestCount = this.hitCount + this.missCount;
+        if (requestCount == 0) {
+            return 0;
+        }
+        return (double) this.hitCount / requestCount;
+    }
+
+    /**
+     * 取得できた回数などの統計情報を初期化する。
+     */
+    public synchronized void resetStatistics() {
+        this.hitCount = 0;
+        this.missCount = 0;
+        this.evictionCount = 0;
+    }
+}
@@ -0,0 +1,207 @@
+package com.hirohiro716.database;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import com.hirohiro716.RudeArray;
+
+/**
+ * SELECT結果のカラム構成(カラム名・JDBC型・値の変換方法)を保持するクラス。<br>
+ * 行ごとにメタデータを参照せずにレコードを連想配列に変換したり、値をカラムに入力するために使用する。
+ *
+ * @author hiro
+ *
+ */
+class ResultShape {
+
+    /**
+     * データベースから取得した値の変換方法。
+     *
+     * @author hiro
+     */
+    enum Converter {
+        /**
+         * 変換しない
+         */
+        NONE,
+        /**
+         * TimestampをDateに変換する
+         */
+        TIMESTAMP,
+        /**
+         * BigDecimalをDoubleに変換する
+         */
+        DECIMAL,
+        /**
+         * 取得した値のクラスによって変換する
+         */
+        GENERIC;
+
+        /**
+         * JDBC型に対応する変換方法を取得する。
+         *
+         * @param columnType JDBC型
+         * @return 変換方法
+         */
+        static Converter find(int columnType) {
+            switch (columnType) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.BOOLEAN:
+            case Types.BIT:
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return NONE;
+            case Types.TIMESTAMP:
+                return TIMESTAMP;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return DECIMAL;
+            default:
+                return GENERIC;
+            }
+        }
+
+        /**
+         * データベースから取得した値をjavaで使用する適当な型に変換する。
+         *
+         * @param value 元のオブジェクト
+         * @return 変換したオブジェクト
+         */
+        Object convert(Object value) {
+            switch (this) {
+            case NONE:
+                return value;
+            case TIMESTAMP:
+                if (value instanceof Timestamp) {
+                    return new Date(((Timestamp) value).getTime());
+                }
+                return GENERIC.convert(value);
+            case DECIMAL:
+                if (value instanceof BigDecimal) {
+                    return ((BigDecimal) value).doubleValue();
+                }
+                return GENERIC.convert(value);
+            default:
+                if (value instanceof Timestamp) {
+                    return new Date(((Timestamp) value).getTime());
+                }
+                if (value instanceof BigDecimal) {
+                    return ((BigDecimal) value).doubleValue();
+                }
+                return value;
+            }
+        }
+    }
+
+    /**
+     * コンストラクタ。
+     *
+     * @param meta 結果セットのメタデータ
+     * @throws SQLException
+     */
+    ResultShape(ResultSetMetaData meta) throws SQLException {
+        int columnCount = meta.getColumnCount();
+        this.columnNames = new String[columnCount];
+        this.columnTypes = new int[columnCount];
+        this.converters = new Converter[columnCount];
+        this.binders = new ColumnBinder[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            this.columnNames[i] = meta.getColumnName(i + 1);
+            this.columnTypes[i] = meta.getColumnType(i + 1);
+            this.converters[i] = Converter.find(this.columnTypes[i]);
+            this.binders[i] = ColumnBinder.find(this.columnTypes[i]);
+        }
+    }
+
+    private String[] columnNames;
+
+    /**
+     * カラム名を取得する。
+     *
+     * @return カラム名
+     */
+    String[] getColumnNames() {
+        return this.columnNames;
+    }
+
+    private int[] columnTypes;
+
+    /**
+     * JDBC型を取得する。
+     *
+     * @return JDBC型
+     */
+    int[] getColumnTypes() {
+        return this.columnTypes;
+    }
+
+    private Converter[] converters;
+
+    private ColumnBinder[] binders;
+
+    /**
+     * カラムに値を入力する際の変換方法を取得する。
+     *
+     * @return 変換方法
+     */
+    ColumnBinder[] getBinders() {
+        return this.binders;
+    }
+
+    /**
+     * カラム数を取得する。
+     *
+     * @return カラム数
+     */
+    int getColumnCount() {
+        return this.columnNames.length;
+    }
+
+    /**
+     * 結果セットの現在の行を値の配列に変換する。
+     *
+     * @param resultSet 結果セット
+     * @return 値の配列
+     * @throws SQLException
+     */
+    Object[] readValues(ResultSet resultSet) throws SQLException {
+        Object[] values = new Object[this.columnNames.length];
+        for (int i = 0; i < this.columnNames.length; i++) {
+            values[i] = this.converters[i].convert(resultSet.getObject(i + 1));
+        }
+        return values;
+    }
+
+    /**
+     * 結果セットの現在の行を連想配列に変換する。
+     *
+     * @param resultSet 結果セット
+     * @return 連想配列
+     * @throws SQLException
+     */
+    RudeArray readRow(ResultSet resultSet) throws SQLException {
+        RudeArray row = new RudeArray(this.columnNames.length);
+        for (int i = 0; i < this.columnNames.length; i++) {
+            row.put(this.columnNames[i], this.converters[i].convert(resultSet.getObject(i + 1)));
+        }
+        return row;
+    }
+}
@@ -0,0 +1,117 @@
+package com.hirohiro716.database;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import com.hirohiro716.RudeArray;
+
+/**
+ * 編集前と編集後のレコードの連想配列を比較するクラス。
+ *
+ * @author hiro
+ *
+ */
+class RowDifference {
+
+    /**
+     * 2つの値がデータベースに書き込む値として等しいかどうかを判定する。<br>
+     * 数値は型が異なっても値が等しければ、日時は時刻が等しければ等しいとみなす。
+     *
+     * @param value1 値1
+     * @param value2 値2
+     * @return 等しい場合はtrue
+     */
+    static boolean isEqualValue(Object value1, Object value2) {
+        if (value1 == value2) {
+            return true;
+        }
+        if (value1 == null || value2 == null) {
+            return false;
+        }
+        if (value1 instanceof Number && value2 instanceof Number) {
+            if (isIntegral(value1) && isIntegral(value2)) {
+                return ((Number) value1).longValue() == ((Number) value2).longValue();
+            }
+            return Double.compare(((Number) value1).doubleValue(), ((Number) value2).doubleValue()) == 0;
+        }
+        if (value1 instanceof Date && value2 instanceof Date) {
+            return ((Date) value1).getTime() == ((Date) value2).getTime();
+        }
+        if (value1 instanceof byte[] && value2 instanceof byte[]) {
+            return Arrays.equals((byte[]) value1, (byte[]) value2);
+        }
+        return value1.equals(value2);
+    }
+
+    /**
+     * 数値が整数型かどうかを判定する。
+     *
+     * @param value 数値
+     * @return 結果
+     */
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte || value instanceof BigInteger;
+    }
+
+    /**
+     * 編集前の連想配列と比較して、値が変更されたか追加されたキーを取得する。
+     *
+     * @param before 編集前の連想配列
+     * @param after 編集後の連想配列
+     * @return 変更されたキー
+     */
+    static String[] findChangedColumns(RudeArray before, RudeArray after) {
+        ArrayList<String> columns = new ArrayList<>();
+        for (String key: after.getKeysAtString()) {
+            if (before.containsKey(key) == false || isEqualValue(before.get(key), after.get(key)) == false) {
+                columns.add(key);
+            }
+        }
+        return columns.toArray(new String[columns.size()]);
+    }
+
+    /**
+     * 主キーの値から、型の違いを吸収した比較用のキーを作成する。
+     *
+     * @param row 連想配列
+     * @param keyColumns 主キーのカラム名
+     * @return 比較用のキー(主キーの値にnullが含まれる場合はnull)
+     */
+    static List<Object> buildKey(RudeArray row, String[] keyColumns) {
+        Object[] values = new Object[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            values[i] = row.get(keyColumns[i]);
+        }
+        return buildKey(values);
+    }
+
+    /**
+     * 主キーの値の配列から、型の違いを吸収した比較用のキーを作成する。
+     *
+     * @param values 主キーの値
+     * @return 比較用のキー(主キーの値にnullが含まれる場合はnull)
+     */
+    static List<Object> buildKey(Object[] values) {
+        Object[] key = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                return null;
+            }
+            if (isIntegral(value)) {
+                key[i] = ((Number) value).longValue();
+            } else if (value instanceof BigDecimal || value instanceof Double || value instanceof Float) {
+                key[i] = ((Number) value).doubleValue();
+            } else if (value instanceof Date) {
+                key[i] = ((Date) value).getTime();
+            } else {
+                key[i] = value;
+            }
+        }
+        return Arrays.asList(key);
+    }
+}
@@ -0,0 +1,135 @@
+package com.hirohiro716.database;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 処理時間が閾値を超えたSQLを出力し、SQLの構成ごとに処理時間の分布を集計するQueryListener。<br>
+ * 複数のデータベースオブジェクトで共有できる。
+ *
+ * @author hiro
+ *
+ */
+public class SlowQueryLogger implements QueryListener {
+
+    /**
+     * 閾値を超えたSQLを標準エラー出力に出力するコンストラクタ。
+     *
+     * @param thresholdMillis 閾値(ミリ秒)
+     */
+    public SlowQueryLogger(long thresholdMillis) {
+        this(thresholdMillis, System.err);
+    }
+
+    /**
+     * コンストラクタ。
+     *
+     * @param thresholdMillis 閾値(ミリ秒)
+     * @param output 閾値を超えたSQLの出力先
+     */
+    public SlowQueryLogger(long thresholdMillis, PrintStream output) {
+        this.thresholdMillis = thresholdMillis;
+        this.output = output;
+    }
+
+    private volatile long thresholdMillis;
+
+    /**
+     * 出力する処理時間の閾値を取得する。
+     *
+     * @return 閾値(ミリ秒)
+     */
+    public long getThresholdMillis() {
+        return this.thresholdMillis;
+    }
+
+    /**
+     * 出力する処理時間の閾値を設定する。
+     *
+     * @param thresholdMillis 閾値(ミリ秒)
+     */
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    private PrintStream output;
+
+    private volatile int maximumNumberOfShapes = 1000;
+
+    /**
+     * 処理時間の分布を集計するSQLの構成の最大数を取得する。
+     *
+     * @return 最大数
+     */
+    public int getMaximumNumberOfShapes() {
+        return this.maximumNumberOfShapes;
+    }
+
+    /**
+     * 処理時間の分布を集計するSQLの構成の最大数を設定する。初期値は1000。<br>
+     * 最大数に達した後の新しい構成は集計されない。
+     *
+     * @param maximumNumberOfShapes 最大数
+     */
+    public void setMaximumNumberOfShapes(int maximumNumberOfShapes) {
+        this.maximumNumberOfShapes = maximumNumberOfShapes;
+    }
+
+    private ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public void queryExecuted(QueryEvent event) {
+        String shape = event.getShape();
+        LatencyHistogram histogram = this.histograms.get(shape);
+        if (histogram == null && this.histograms.size() < this.maximumNumberOfShapes) {
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = this.histograms.putIfAbsent(shape, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        if (histogram != null) {
+            histogram.record(event.getTotalNanos());
+        }
+        if (event.getTotalNanos() >= this.thresholdMillis * 1000000) {
+            this.log(event);
+        }
+    }
+
+    /**
+     * 閾値を超えたSQLを出力する。出力方法を変更する場合はオーバーライドする。
+     *
+     * @param event 実行結果
+     */
+    protected void log(QueryEvent event) {
+        this.output.println("Slow query: " + event.toString());
+    }
+
+    /**
+     * SQLの構成ごとの処理時間の分布を取得する。
+     *
+     * @return SQLの構成をキーにした処理時間の分布
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return new HashMap<>(this.histograms);
+    }
+
+    /**
+     * SQLの構成に対する処理時間の分布を取得する。
+     *
+     * @param shape QueryEventのgetShapeメソッドで取得できるSQLの構成
+     * @return 処理時間の分布(集計されていない場合はnull)
+     */
+    public LatencyHistogram getHistogram(String shape) {
+        return this.histograms.get(shape);
+    }
+
+    /**
+     * 集計した処理時間の分布を破棄する。
+     */
+    public void clear() {
+        this.histograms.clear();
+    }
+}
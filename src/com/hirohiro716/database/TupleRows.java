@@ -0,0 +1,321 @@
+package com.hirohiro716.database;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import com.hirohiro716.RudeArray;
+import com.hirohiro716.StringConverter;
+import com.hirohiro716.datetime.Datetime;
+
+/**
+ * SELECT結果をカラム名の索引と1行ごとの値の配列で保持するクラス。<br>
+ * カラム名の索引を全行で共有するため、連想配列で保持するよりもレコードあたりのメモリ使用量が少ない。
+ *
+ * @author hiro
+ *
+ */
+public class TupleRows {
+
+    /**
+     * コンストラクタ。
+     *
+     * @param columnNames カラム名
+     * @param tuples 1行ごとの値の配列
+     */
+    TupleRows(String[] columnNames, List<Object[]> tuples) {
+        this.columnNames = columnNames;
+        this.columnIndexes = new HashMap<>((int) (columnNames.length / 0.75f) + 1);
+        for (int i = 0; i < columnNames.length; i++) {
+            this.columnIndexes.put(columnNames[i], i);
+        }
+        this.tuples = tuples.toArray(new Object[tuples.size()][]);
+    }
+
+    private String[] columnNames;
+
+    private HashMap<String, Integer> columnIndexes;
+
+    private Object[][] tuples;
+
+    /**
+     * カラム名を取得する。
+     *
+     * @return カラム名
+     */
+    public String[] getColumnNames() {
+        return this.columnNames.clone();
+    }
+
+    /**
+     * カラム名に対するカラム番号(0から開始)を取得する。大量の行を処理する場合は事前に取得して番号で値を取得する。
+     *
+     * @param columnName カラム名
+     * @return カラム番号(存在しない場合は-1)
+     */
+    public int getColumnIndex(String columnName) {
+        Integer index = this.columnIndexes.get(columnName);
+        if (index == null) {
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * 行数を取得する。
+     *
+     * @return 行数
+     */
+    public int size() {
+        return this.tuples.length;
+    }
+
+    /**
+     * 値を取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnIndex カラム番号(0から開始)
+     * @return 値
+     */
+    public Object get(int rowIndex, int columnIndex) {
+        return this.tuples[rowIndex][columnIndex];
+    }
+
+    /**
+     * 値を取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnName カラム名
+     * @return 値 カラムが存在しない場合はnull
+     */
+    public Object get(int rowIndex, String columnName) {
+        int columnIndex = this.getColumnIndex(columnName);
+        if (columnIndex < 0) {
+            return null;
+        }
+        return this.tuples[rowIndex][columnIndex];
+    }
+
+    /**
+     * 値をStringとして取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnIndex カラム番号(0から開始)
+     * @return 値 nullの場合はnull
+     */
+    public String getString(int rowIndex, int columnIndex) {
+        Object value = this.tuples[rowIndex][columnIndex];
+        if (value == null) {
+            return null;
+        }
+        return value.toString();
+    }
+
+    /**
+     * 値をStringとして取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnName カラム名
+     * @return 値 存在しない場合はnull
+     */
+    public String getString(int rowIndex, String columnName) {
+        int columnIndex = this.getColumnIndex(columnName);
+        if (columnIndex < 0) {
+            return null;
+        }
+        return this.getString(rowIndex, columnIndex);
+    }
+
+    /**
+     * 値をIntegerとして取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnIndex カラム番号(0から開始)
+     * @return 値 存在しない場合や変換できない場合はnull
+     */
+    public Integer getInteger(int rowIndex, int columnIndex) {
+        Object value = this.tuples[rowIndex][columnIndex];
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        if (value == null) {
+            return null;
+        }
+        return StringConverter.stringToInteger(value.toString());
+    }
+
+    /**
+     * 値をIntegerとして取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnName カラム名
+     * @return 値 存在しない場合や変換できない場合はnull
+     */
+    public Integer getInteger(int rowIndex, String columnName) {
+        int columnIndex = this.getColumnIndex(columnName);
+        if (columnIndex < 0) {
+            return null;
+        }
+        return this.getInteger(rowIndex, columnIndex);
+    }
+
+    /**
+     * 値をLongとして取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnIndex カラム番号(0から開始)
+     * @return 値 存在しない場合や変換できない場合はnull
+     */
+    public Long getLong(int rowIndex, int columnIndex) {
+        Object value = this.tuples[rowIndex][columnIndex];
+        if (value instanceof Long) {
+            return (Long) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value == null) {
+            return null;
+        }
+        return StringConverter.stringToLong(value.toString());
+    }
+
+    /**
+     * 値をLongとして取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnName カラム名
+     * @return 値 存在しない場合や変換できない場合はnull
+     */
+    public Long getLong(int rowIndex, String columnName) {
+        int columnIndex = this.getColumnIndex(columnName);
+        if (columnIndex < 0) {
+            return null;
+        }
+        return this.getLong(rowIndex, columnIndex);
+    }
+
+    /**
+     * 値をDoubleとして取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnIndex カラム番号(0から開始)
+     * @return 値 存在しない場合や変換できない場合はnull
+     */
+    public Double getDouble(int rowIndex, int columnIndex) {
+        Object value = this.tuples[rowIndex][columnIndex];
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value == null) {
+            return null;
+        }
+        return StringConverter.stringToDouble(value.toString());
+    }
+
+    /**
+     * 値をDoubleとして取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnName カラム名
+     * @return 値 存在しない場合や変換できない場合はnull
+     */
+    public Double getDouble(int rowIndex, String columnName) {
+        int columnIndex = this.getColumnIndex(columnName);
+        if (columnIndex < 0) {
+            return null;
+        }
+        return this.getDouble(rowIndex, columnIndex);
+    }
+
+    /**
+     * 値をBooleanとして取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnIndex カラム番号(0から開始)
+     * @return 値 存在しない場合はnull
+     */
+    public Boolean getBoolean(int rowIndex, int columnIndex) {
+        Object value = this.tuples[rowIndex][columnIndex];
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value == null) {
+            return null;
+        }
+        return StringConverter.stringToBoolean(value.toString());
+    }
+
+    /**
+     * 値をBooleanとして取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnName カラム名
+     * @return 値 存在しない場合はnull
+     */
+    public Boolean getBoolean(int rowIndex, String columnName) {
+        int columnIndex = this.getColumnIndex(columnName);
+        if (columnIndex < 0) {
+            return null;
+        }
+        return this.getBoolean(rowIndex, columnIndex);
+    }
+
+    /**
+     * 値をDateとして取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnIndex カラム番号(0から開始)
+     * @return 値 存在しない場合や変換できない場合はnull
+     */
+    public Date getDate(int rowIndex, int columnIndex) {
+        Object value = this.tuples[rowIndex][columnIndex];
+        if (value instanceof Timestamp) {
+            return new Date(((Timestamp) value).getTime());
+        }
+        if (value instanceof Date) {
+            return (Date) value;
+        }
+        if (value == null) {
+            return null;
+        }
+        return Datetime.stringToDate(value.toString());
+    }
+
+    /**
+     * 値をDateとして取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @param columnName カラム名
+     * @return 値 存在しない場合や変換できない場合はnull
+     */
+    public Date getDate(int rowIndex, String columnName) {
+        int columnIndex = this.getColumnIndex(columnName);
+        if (columnIndex < 0) {
+            return null;
+        }
+        return this.getDate(rowIndex, columnIndex);
+    }
+
+    /**
+     * 1行を連想配列に変換して取得する。
+     *
+     * @param rowIndex 行番号(0から開始)
+     * @return 連想配列
+     */
+    public RudeArray toRudeArray(int rowIndex) {
+        Object[] tuple = this.tuples[rowIndex];
+        RudeArray row = new RudeArray(this.columnNames.length);
+        for (int i = 0; i < this.columnNames.length; i++) {
+            row.put(this.columnNames[i], tuple[i]);
+        }
+        return row;
+    }
+}
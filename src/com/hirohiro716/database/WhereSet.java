@@ -212,20 +212,40 @@ public class WhereSet implements Cloneable {
         this.wheres.add(where);
     }
 
+    private Compiled compiled = null;
+
+    /**
+     * パラメータWhere句とパラメータの取り出し方をコンパイルした結果を取得する。<br>
+     * 結果は保持され、Where条件のカラム名・比較演算子・NOT・比較値の数が変更されるまで再利用される。
+     *
+     * @return コンパイル結果
+     */
+    public Compiled compile() {
+        Compiled compiled = this.compiled;
+        if (compiled == null || compiled.matches(this.wheres) == false) {
+            compiled = new Compiled(this.wheres);
+            this.compiled = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * Where条件の構成(カラム名・比較演算子・NOT・比較値の数)から算出したハッシュ値を取得する。<br>
+     * 比較値が異なっても構成が同じであれば同じ値になるため、呼び出し側でキャッシュのキーに使用できる。
+     *
+     * @return ハッシュ値
+     */
+    public int getShapeHash() {
+        return this.compile().getShapeHash();
+    }
+
     /**
      * 「カラム1 = ? AND カラム2 = ?」のようなパラメータWhere句を生成する。
      *
      * @return パラメータWhere句
      */
     public String buildParameterClause() {
-        StringBuilder builder = new StringBuilder();
-        for (Where where: this.wheres) {
-            if (builder.length() > 0) {
-                builder.append(" AND ");
-            }
-            builder.append(where.buildParameterClause());
-        }
-        return builder.toString();
+        return this.compile().getParameterClause();
     }
 
     /**
@@ -234,34 +254,7 @@ public class WhereSet implements Cloneable {
      * @return パラメータ
      */
     public Object[] buildParameters() {
-        ArrayList<Object> parameters = new ArrayList<>();
-        for (Where where: this.wheres) {
-            switch (where.getComparison()) {
-            case EQUAL:
-            case NOT_EQUAL:
-            case GREATER:
-            case GREATER_EQUAL:
-            case LESS:
-            case LESS_EQUAL:
-            case LIKE:
-            case SIMILARTO:
-            case REGEXP:
-                parameters.add(where.getValue());
-                break;
-            case BETWEEN:
-                parameters.add(where.getValue());
-                parameters.add(where.getValue2());
-                break;
-            case IN:
-                for (Object value: where.getValues()) {
-                    parameters.add(value);
-                }
-                break;
-            case IS_NULL:
-                break;
-            }
-        }
-        return parameters.toArray();
+        return this.compile().extractParameters(this);
     }
 
     /**
@@ -313,9 +306,170 @@ public class WhereSet implements Cloneable {
         }
         clone.getWheres().clear();
         clone.getWheres().addAll(cloneWheres);
+        clone.compiled = this.compiled;
         return clone;
     }
 
+    /**
+     * WhereSetのパラメータWhere句とパラメータの取り出し方をコンパイルした不変クラス。
+     *
+     * @author hiro
+     */
+    public static class Compiled {
+
+        /**
+         * コンストラクタ。
+         *
+         * @param wheres Whereクラスリスト
+         */
+        private Compiled(ArrayList<Where> wheres) {
+            int size = wheres.size();
+            this.columns = new String[size];
+            this.comparisons = new Comparison[size];
+            this.isNots = new boolean[size];
+            this.numberOfValues = new int[size];
+            StringBuilder builder = new StringBuilder();
+            int shapeHash = 1;
+            int parameterCount = 0;
+            for (int i = 0; i < size; i++) {
+                Where where = wheres.get(i);
+                this.columns[i] = where.getColumn();
+                this.comparisons[i] = where.getComparison();
+                this.isNots[i] = where.isNot();
+                this.numberOfValues[i] = countValues(where);
+                parameterCount += this.numberOfValues[i];
+                if (i > 0) {
+                    builder.append(" AND ");
+                }
+                builder.append(where.buildParameterClause());
+                shapeHash = 31 * shapeHash + (this.columns[i] == null ? 0 : this.columns[i].hashCode());
+                shapeHash = 31 * shapeHash + this.comparisons[i].hashCode();
+                shapeHash = 31 * shapeHash + (this.isNots[i] ? 1 : 0);
+                shapeHash = 31 * shapeHash + this.numberOfValues[i];
+            }
+            this.parameterClause = builder.toString();
+            this.parameterCount = parameterCount;
+            this.shapeHash = shapeHash;
+        }
+
+        private final String[] columns;
+
+        private final Comparison[] comparisons;
+
+        private final boolean[] isNots;
+
+        private final int[] numberOfValues;
+
+        private final String parameterClause;
+
+        /**
+         * パラメータWhere句を取得する。
+         *
+         * @return パラメータWhere句
+         */
+        public String getParameterClause() {
+            return this.parameterClause;
+        }
+
+        private final int parameterCount;
+
+        /**
+         * パラメータの数を取得する。
+         *
+         * @return パラメータの数
+         */
+        public int getParameterCount() {
+            return this.parameterCount;
+        }
+
+        private final int shapeHash;
+
+        /**
+         * Where条件の構成から算出したハッシュ値を取得する。
+         *
+         * @return ハッシュ値
+         */
+        public int getShapeHash() {
+            return this.shapeHash;
+        }
+
+        /**
+         * WhereSetが保持している比較値をパラメータWhere句の順序で取り出す。
+         *
+         * @param whereSet コンパイル元と同じ構成のWhereSet
+         * @return パラメータ
+         */
+        public Object[] extractParameters(WhereSet whereSet) {
+            Object[] parameters = new Object[this.parameterCount];
+            int index = 0;
+            for (int i = 0; i < this.comparisons.length; i++) {
+                Where where = whereSet.wheres.get(i);
+                switch (this.comparisons[i]) {
+                case IS_NULL:
+                    break;
+                case BETWEEN:
+                    parameters[index++] = where.getValue();
+                    parameters[index++] = where.getValue2();
+                    break;
+                case IN:
+                    for (Object value: where.getValues()) {
+                        parameters[index++] = value;
+                    }
+                    break;
+                default:
+                    parameters[index++] = where.getValue();
+                    break;
+                }
+            }
+            return parameters;
+        }
+
+        /**
+         * Whereクラスリストの構成がコンパイル時と一致するか判定する。
+         *
+         * @param wheres Whereクラスリスト
+         * @return 一致する場合はtrue
+         */
+        private boolean matches(ArrayList<Where> wheres) {
+            if (wheres.size() != this.comparisons.length) {
+                return false;
+            }
+            for (int i = 0; i < this.comparisons.length; i++) {
+                Where where = wheres.get(i);
+                if (where.getComparison() != this.comparisons[i] || where.isNot() != this.isNots[i]) {
+                    return false;
+                }
+                String column = where.getColumn();
+                if (column != this.columns[i] && (column == null || column.equals(this.columns[i]) == false)) {
+                    return false;
+                }
+                if (this.comparisons[i] == Comparison.IN && where.getValues().size() != this.numberOfValues[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Where条件のパラメータの数を取得する。
+         *
+         * @param where Where条件
+         * @return パラメータの数
+         */
+        private static int countValues(Where where) {
+            switch (where.getComparison()) {
+            case IS_NULL:
+                return 0;
+            case BETWEEN:
+                return 2;
+            case IN:
+                return where.getValues().size();
+            default:
+                return 1;
+            }
+        }
+    }
+
     /**
      * Whereの１つの条件を表すクラス。
      *
@@ -20,6 +20,58 @@ public class MySQL extends AbstractDatabase {
         super.setConnection(DriverManager.getConnection(connectionString));
     }
 
+    private boolean isRewriteBatchedStatements = false;
+
+    /**
+     * バッチで実行する更新系SQLを複数行のSQLに書き換えて送信するかどうかを取得する。
+     *
+     * @return 結果
+     */
+    public boolean isRewriteBatchedStatements() {
+        return this.isRewriteBatchedStatements;
+    }
+
+    /**
+     * バッチで実行する更新系SQLを複数行のSQLに書き換えて送信するかどうかを設定する。<br>
+     * サーバー名などを指定するconnectメソッドの接続文字列に反映され、setBatchSizeメソッドと併用することで一括更新の往復回数を減らすことができる。
+     *
+     * @param isRewriteBatchedStatements
+     */
+    public void setRewriteBatchedStatements(boolean isRewriteBatchedStatements) {
+        this.isRewriteBatchedStatements = isRewriteBatchedStatements;
+    }
+
+    /**
+     * 接続文字列に付与するドライバーのオプションを作成する。
+     *
+     * @return オプション
+     */
+    private String buildDriverOptions() {
+        if (this.isRewriteBatchedStatements) {
+            return "&rewriteBatchedStatements=true";
+        }
+        return "";
+    }
+
+    @Override
+    public int getMaximumParameterCount() {
+        return 65535;
+    }
+
+    /**
+     * デッドロック(1213)とロック待ちのタイムアウト(1205)も再試行可能とする。
+     */
+    @Override
+    protected boolean isRetryableError(SQLException exception) {
+        switch (exception.getErrorCode()) {
+        case 1213:
+        case 1205:
+            return true;
+        default:
+            return super.isRetryableError(exception);
+        }
+    }
+
     /**
      * MySQLデータベースに接続する。
      *
@@ -32,7 +84,7 @@ public class MySQL extends AbstractDatabase {
      * @throws ClassNotFoundException
      */
     public void connect(String server, String dbName, String user, String pass, String characterEncoding) throws ClassNotFoundException, SQLException {
-        String connectionString = StringConverter.join("jdbc:mysql://", server, "/", dbName, "?user=", user, "&password=", pass, "&characterEncoding=", characterEncoding);
+        String connectionString = StringConverter.join("jdbc:mysql://", server, "/", dbName, "?user=", user, "&password=", pass, "&characterEncoding=", characterEncoding, this.buildDriverOptions());
         this.connect(connectionString);
     }
 
@@ -49,7 +101,7 @@ public class MySQL extends AbstractDatabase {
      * @throws ClassNotFoundException
      */
     public void connect(String server, String dbName, String user, String pass, String characterEncoding, int port) throws ClassNotFoundException, SQLException {
-        String connectionString = StringConverter.join("jdbc:mysql://", server, ":", port, "/", dbName, "?user=", user, "&password=", pass, "&characterEncoding=", characterEncoding);
+        String connectionString = StringConverter.join("jdbc:mysql://", server, ":", port, "/", dbName, "?user=", user, "&password=", pass, "&characterEncoding=", characterEncoding, this.buildDriverOptions());
         this.connect(connectionString);
     }
 }
@@ -1,8 +1,28 @@
 package com.hirohiro716.database.postgresql;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.util.Date;
+import java.util.List;
 
 import com.hirohiro716.StringConverter;
 import com.hirohiro716.database.AbstractDatabase;
@@ -23,6 +43,442 @@ public class PostgreSQL extends AbstractDatabase {
         this.setConnection(DriverManager.getConnection(connectionString));
     }
 
+    private boolean isReWriteBatchedInserts = false;
+
+    /**
+     * バッチで実行するINSERT文を複数行のINSERT文に書き換えて送信するかどうかを取得する。
+     *
+     * @return 結果
+     */
+    public boolean isReWriteBatchedInserts() {
+        return this.isReWriteBatchedInserts;
+    }
+
+    /**
+     * バッチで実行するINSERT文を複数行のINSERT文に書き換えて送信するかどうかを設定する。<br>
+     * サーバー名などを指定するconnectメソッドの接続文字列に反映され、setBatchSizeメソッドと併用することで一括更新の往復回数を減らすことができる。
+     *
+     * @param isReWriteBatchedInserts
+     */
+    public void setReWriteBatchedInserts(boolean isReWriteBatchedInserts) {
+        this.isReWriteBatchedInserts = isReWriteBatchedInserts;
+    }
+
+    /**
+     * 接続文字列に付与するドライバーのオプションを作成する。
+     *
+     * @return オプション
+     */
+    private String buildDriverOptions() {
+        if (this.isReWriteBatchedInserts) {
+            return "&reWriteBatchedInserts=true";
+        }
+        return "";
+    }
+
+    @Override
+    public int getMaximumParameterCount() {
+        return 32767;
+    }
+
+    /**
+     * デッドロックの検出(SQLSTATE 40P01)も再試行可能とする。
+     */
+    @Override
+    protected boolean isRetryableError(SQLException exception) {
+        return "40P01".equals(exception.getSQLState()) || super.isRetryableError(exception);
+    }
+
+    private int copyThreshold = 1000;
+
+    /**
+     * 一括追加でCOPY文を使用する最小行数を取得する。
+     *
+     * @return 最小行数
+     */
+    public int getCopyThreshold() {
+        return this.copyThreshold;
+    }
+
+    /**
+     * 一括追加でCOPY文を使用する最小行数を設定する。初期値は1000。<br>
+     * 0以下の場合はCOPY文を使用せずに複数行のINSERT文で追加する。
+     *
+     * @param copyThreshold 最小行数
+     */
+    public void setCopyThreshold(int copyThreshold) {
+        this.copyThreshold = copyThreshold;
+    }
+
+    private int cursorFetchSize = 10000;
+
+    /**
+     * カーソルで1回に取得する行数を取得する。
+     *
+     * @return 行数
+     */
+    public int getCursorFetchSize() {
+        return this.cursorFetchSize;
+    }
+
+    /**
+     * fetchRowsEachWithCursorメソッドでカーソルから1回に取得する行数を設定する。初期値は10000。
+     *
+     * @param cursorFetchSize 行数
+     */
+    public void setCursorFetchSize(int cursorFetchSize) {
+        this.cursorFetchSize = Math.max(cursorFetchSize, 1);
+    }
+
+    /**
+     * サーバー側のカーソルを使用してSELECT結果のレコードを1行ずつ連想配列で処理する。<br>
+     * ドライバーが結果をすべて読み込まずにgetCursorFetchSizeメソッドの行数ずつ取得するため、大量のレコードでもメモリ使用量が一定になる。
+     *
+     * @param sql
+     * @param processor レコードを処理するインスタンス
+     * @return 処理したレコード数
+     * @throws SQLException
+     */
+    public long fetchRowsEachWithCursor(String sql, RowProcessor processor) throws SQLException {
+        return this.fetchRowsEachWithCursor(sql, new Object[] {}, processor);
+    }
+
+    /**
+     * サーバー側のカーソルを使用してプリペアードステートメントでSELECT結果のレコードを1行ずつ連想配列で処理する。<br>
+     * ドライバーが結果をすべて読み込まずにgetCursorFetchSizeメソッドの行数ずつ取得するため、大量のレコードでもメモリ使用量が一定になる。<br>
+     * カーソルはトランザクション内でのみ有効なため、トランザクションが開始されていない場合はこのメソッドで開始して処理の終了時に終了する。
+     * フェッチサイズとResultSetの保持機能は処理の終了時に元に戻す。
+     *
+     * @param sql
+     * @param params パラメータ
+     * @param processor レコードを処理するインスタンス
+     * @return 処理したレコード数
+     * @throws SQLException
+     */
+    public long fetchRowsEachWithCursor(String sql, Object[] params, RowProcessor processor) throws SQLException {
+        Connection connection = this.getConnection();
+        int previousFetchSize = this.getFetchSize();
+        int previousHoldability = connection.getHoldability();
+        boolean isImplicitTransaction = this.isTransactionActive() == false;
+        if (isImplicitTransaction) {
+            this.beginImplicitTransaction();
+        }
+        boolean isSucceeded = false;
+        try {
+            connection.setHoldability(ResultSet.CLOSE_CURSORS_AT_COMMIT);
+            this.setFetchSize(this.cursorFetchSize);
+            long numberOfRows = this.fetchRowsEach(sql, params, processor);
+            isSucceeded = true;
+            return numberOfRows;
+        } finally {
+            this.setFetchSize(previousFetchSize);
+            try {
+                connection.setHoldability(previousHoldability);
+            } finally {
+                if (isImplicitTransaction) {
+                    this.endImplicitTransaction(isSucceeded);
+                }
+            }
+        }
+    }
+
+    /**
+     * 行数がgetCopyThresholdメソッドの値以上の場合はCOPY FROM STDIN文をCSV形式で実行して一括追加する。<br>
+     * ドライバーのCopyManagerが利用できない場合は複数行のINSERT文で追加する。
+     */
+    @Override
+    protected int executeBulkInsert(String tableName, String[] columnNames, int[] columnTypes, List<RudeArray> rows) throws SQLException {
+        if (this.copyThreshold <= 0 || rows.size() < this.copyThreshold) {
+            return super.executeBulkInsert(tableName, columnNames, columnTypes, rows);
+        }
+        Object copyManager = this.createCopyManager();
+        if (copyManager == null) {
+            return super.executeBulkInsert(tableName, columnNames, columnTypes, rows);
+        }
+        StringBuilder sql = new StringBuilder("COPY ");
+        sql.append(tableName);
+        sql.append(" (");
+        for (int i = 0; i < columnNames.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(columnNames[i]);
+        }
+        sql.append(") FROM STDIN WITH CSV");
+        try (CsvRowsReader reader = new CsvRowsReader(rows, columnNames)) {
+            return (int) invokeCopy(copyManager, "copyIn", sql.toString(), Reader.class, reader);
+        } catch (IOException exception) {
+            throw new SQLException(exception);
+        }
+    }
+
+    /**
+     * CopyManagerのメソッドを呼び出してCOPY文を実行する。
+     *
+     * @param copyManager CopyManager
+     * @param methodName copyInまたはcopyOut
+     * @param sql COPY文
+     * @param streamClass 入出力に使用するクラス
+     * @param stream 入出力に使用するインスタンス
+     * @return 処理したレコード数
+     * @throws SQLException
+     * @throws IOException
+     */
+    private static long invokeCopy(Object copyManager, String methodName, String sql, Class<?> streamClass, Object stream) throws SQLException, IOException {
+        try {
+            Method method = copyManager.getClass().getMethod(methodName, String.class, streamClass);
+            return ((Long) method.invoke(copyManager, sql, stream)).longValue();
+        } catch (InvocationTargetException exception) {
+            if (exception.getCause() instanceof SQLException) {
+                throw (SQLException) exception.getCause();
+            }
+            if (exception.getCause() instanceof IOException) {
+                throw (IOException) exception.getCause();
+            }
+            throw new SQLException(exception.getCause());
+        } catch (ReflectiveOperationException exception) {
+            throw new SQLException(exception);
+        }
+    }
+
+    /**
+     * "ドライバーがCOPY文に対応していません。" というエラーメッセージ用の文字列
+     */
+    public static final String ERROR_MESSAGE_COPY_NOT_SUPPORTED = "ドライバーがCOPY文に対応していません。";
+
+    /**
+     * テーブルまたはSELECT文の結果をCOPY TO STDOUT文でCSV形式のまま出力する。<br>
+     * レコードをメモリ上に保持せずに出力先へ書き込む。値はすべて引用符で囲まれ、NULLは空欄になる。
+     *
+     * @param source テーブル名またはSELECT文
+     * @param outputStream 出力先
+     * @param charsetName 文字セット(nullの場合は既定の文字セット)
+     * @param isHeaderOutput 1行目にカラム名を出力するかどうか
+     * @param delimiter 区切り文字
+     * @return 出力したレコード数
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long exportCSV(String source, OutputStream outputStream, String charsetName, boolean isHeaderOutput, String delimiter) throws SQLException, IOException {
+        Object copyManager = this.createCopyManager();
+        if (copyManager == null) {
+            throw new SQLException(ERROR_MESSAGE_COPY_NOT_SUPPORTED);
+        }
+        StringBuilder sql = new StringBuilder("COPY ");
+        if (source.trim().toUpperCase().startsWith("SELECT")) {
+            sql.append("(");
+            sql.append(source.trim().replaceAll(";$", ""));
+            sql.append(")");
+        } else {
+            sql.append(source);
+        }
+        sql.append(" TO STDOUT WITH (FORMAT csv, HEADER ");
+        sql.append(isHeaderOutput);
+        sql.append(", DELIMITER '");
+        sql.append(delimiter.replace("'", "''"));
+        sql.append("', FORCE_QUOTE *)");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, findCharset(charsetName)));
+        long numberOfRows = invokeCopy(copyManager, "copyOut", sql.toString(), Writer.class, writer);
+        writer.flush();
+        return numberOfRows;
+    }
+
+    /**
+     * テーブルまたはSELECT文の結果をCOPY TO STDOUT文でCSVファイルに出力する。区切り文字はカンマ。
+     *
+     * @param source テーブル名またはSELECT文
+     * @param path 出力先のファイル
+     * @param charsetName 文字セット(nullの場合は既定の文字セット)
+     * @param isHeaderOutput 1行目にカラム名を出力するかどうか
+     * @return 出力したレコード数
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long exportCSV(String source, Path path, String charsetName, boolean isHeaderOutput) throws SQLException, IOException {
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            return this.exportCSV(source, outputStream, charsetName, isHeaderOutput, ",");
+        }
+    }
+
+    /**
+     * CSV形式の入力をCOPY FROM STDIN文でテーブルに追加する。<br>
+     * レコードをメモリ上に保持せずにデータベースへ送信する。引用符で囲まれていない空欄はNULLになる。
+     *
+     * @param tableName テーブル名(カラムを指定する場合は「テーブル名 (カラム1, カラム2)」)
+     * @param inputStream 入力元
+     * @param charsetName 文字セット(nullの場合は既定の文字セット)
+     * @param isHeaderIncluded 1行目がカラム名かどうか
+     * @param delimiter 区切り文字
+     * @return 追加したレコード数
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long importCSV(String tableName, InputStream inputStream, String charsetName, boolean isHeaderIncluded, String delimiter) throws SQLException, IOException {
+        Object copyManager = this.createCopyManager();
+        if (copyManager == null) {
+            throw new SQLException(ERROR_MESSAGE_COPY_NOT_SUPPORTED);
+        }
+        StringBuilder sql = new StringBuilder("COPY ");
+        sql.append(tableName);
+        sql.append(" FROM STDIN WITH (FORMAT csv, HEADER ");
+        sql.append(isHeaderIncluded);
+        sql.append(", DELIMITER '");
+        sql.append(delimiter.replace("'", "''"));
+        sql.append("')");
+        Reader reader = new BufferedReader(new InputStreamReader(inputStream, findCharset(charsetName)));
+        try {
+            return invokeCopy(copyManager, "copyIn", sql.toString(), Reader.class, reader);
+        } finally {
+            this.invalidateQueryResultCache(tableName);
+        }
+    }
+
+    /**
+     * CSVファイルをCOPY FROM STDIN文でテーブルに追加する。区切り文字はカンマ。
+     *
+     * @param tableName テーブル名(カラムを指定する場合は「テーブル名 (カラム1, カラム2)」)
+     * @param path 入力元のファイル
+     * @param charsetName 文字セット(nullの場合は既定の文字セット)
+     * @param isHeaderIncluded 1行目がカラム名かどうか
+     * @return 追加したレコード数
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long importCSV(String tableName, Path path, String charsetName, boolean isHeaderIncluded) throws SQLException, IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return this.importCSV(tableName, inputStream, charsetName, isHeaderIncluded, ",");
+        }
+    }
+
+    /**
+     * 文字セット名から文字セットを取得する。
+     *
+     * @param charsetName 文字セット名
+     * @return 文字セット(nullや不明な名前の場合は既定の文字セット)
+     */
+    private static Charset findCharset(String charsetName) {
+        try {
+            if (charsetName != null) {
+                return Charset.forName(charsetName);
+            }
+        } catch (Exception exception) {
+            exception.printStackTrace();
+        }
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * ドライバーのCopyManagerを作成する。
+     *
+     * @return CopyManager(ドライバーが対応していない場合はnull)
+     * @throws SQLException
+     */
+    private Object createCopyManager() throws SQLException {
+        try {
+            Class<?> pgConnectionClass = Class.forName("org.postgresql.PGConnection");
+            Object pgConnection = this.getConnection().unwrap(pgConnectionClass);
+            return pgConnectionClass.getMethod("getCopyAPI").invoke(pgConnection);
+        } catch (InvocationTargetException exception) {
+            if (exception.getCause() instanceof SQLException) {
+                throw (SQLException) exception.getCause();
+            }
+            throw new SQLException(exception.getCause());
+        } catch (ReflectiveOperationException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * 値をCOPY文のCSV形式の1項目に変換する。NULLは空欄、それ以外は引用符で囲む。
+     *
+     * @param value 値
+     * @return CSVの項目
+     */
+    private static String formatCsvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String string;
+        if (value instanceof java.sql.Date || value instanceof Time || value instanceof Timestamp) {
+            string = value.toString();
+        } else if (value instanceof Date) {
+            string = new Timestamp(((Date) value).getTime()).toString();
+        } else if (value instanceof BigDecimal) {
+            string = ((BigDecimal) value).toPlainString();
+        } else if (value instanceof byte[]) {
+            StringBuilder hex = new StringBuilder("\\x");
+            for (byte b: (byte[]) value) {
+                hex.append(String.format("%02x", b & 0xff));
+            }
+            string = hex.toString();
+        } else {
+            string = value.toString();
+        }
+        return StringConverter.join("\"", string.replace("\"", "\"\""), "\"");
+    }
+
+    /**
+     * 連想配列を1行ずつCSV形式に変換しながら読み込むReader。
+     *
+     * @author hiro
+     */
+    private static class CsvRowsReader extends Reader {
+
+        /**
+         * コンストラクタ。
+         *
+         * @param rows 連想配列
+         * @param columnNames 出力するカラム名
+         */
+        private CsvRowsReader(List<RudeArray> rows, String[] columnNames) {
+            this.rows = rows;
+            this.columnNames = columnNames;
+        }
+
+        private List<RudeArray> rows;
+
+        private String[] columnNames;
+
+        private int rowIndex = 0;
+
+        private String line = "";
+
+        private int position = 0;
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (this.position >= this.line.length()) {
+                if (this.rowIndex >= this.rows.size()) {
+                    return -1;
+                }
+                RudeArray row = this.rows.get(this.rowIndex);
+                this.rowIndex++;
+                StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < this.columnNames.length; i++) {
+                    if (i > 0) {
+                        builder.append(",");
+                    }
+                    builder.append(formatCsvValue(row.get(this.columnNames[i])));
+                }
+                builder.append("\n");
+                this.line = builder.toString();
+                this.position = 0;
+            }
+            int numberOfChars = Math.min(length, this.line.length() - this.position);
+            this.line.getChars(this.position, this.position + numberOfChars, buffer, offset);
+            this.position += numberOfChars;
+            return numberOfChars;
+        }
+
+        @Override
+        public void close() {
+            this.rows = null;
+        }
+    }
+
     /**
      * PostgreSQLデータベースに接続する。
      *
@@ -35,7 +491,7 @@ public class PostgreSQL extends AbstractDatabase {
      * @throws ClassNotFoundException
      */
     public void connect(String server, String dbName, String user, String pass, String characterEncoding) throws ClassNotFoundException, SQLException {
-        String connectionString = StringConverter.join("jdbc:postgresql://", server, "/", dbName, "?user=", user, "&password=", pass, "&characterEncoding=", characterEncoding);
+        String connectionString = StringConverter.join("jdbc:postgresql://", server, "/", dbName, "?user=", user, "&password=", pass, "&characterEncoding=", characterEncoding, this.buildDriverOptions());
         this.connect(connectionString);
     }
 
@@ -52,7 +508,7 @@ public class PostgreSQL extends AbstractDatabase {
      * @throws ClassNotFoundException
      */
     public void connect(String server, String dbName, String user, String pass, String characterEncoding, int port) throws ClassNotFoundException, SQLException {
-        String connectionString = StringConverter.join("jdbc:postgresql://", server, ":", port, "/", dbName, "?user=", user, "&password=", pass, "&characterEncoding=", characterEncoding);
+        String connectionString = StringConverter.join("jdbc:postgresql://", server, ":", port, "/", dbName, "?user=", user, "&password=", pass, "&characterEncoding=", characterEncoding, this.buildDriverOptions());
         this.connect(connectionString);
     }
 
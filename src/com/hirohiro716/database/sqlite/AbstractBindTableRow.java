@@ -5,7 +5,10 @@ import java.io.IOException;
 import java.sql.SQLException;
 
 import com.hirohiro716.RudeArray;
+import com.hirohiro716.database.ConcurrentUpdateException;
 import com.hirohiro716.database.DataNotFoundException;
+import com.hirohiro716.database.WhereSet;
+import com.hirohiro716.database.WhereSet.Comparison;
 import com.hirohiro716.database.sqlite.SQLite.IsolationLevel;
 
 /**
@@ -46,6 +49,17 @@ public abstract class AbstractBindTableRow extends com.hirohiro716.database.Abst
     }
 
     private boolean isEditMode = false;
+
+    /**
+     * 楽観的排他制御に使用するバージョンカラム名を取得する。<br>
+     * nullではない値を返すようにオーバーライドすると、editメソッドは別の接続で編集中に変更する処理を行わず、
+     * updateメソッドが更新時にバージョンを照合して1加算する。
+     *
+     * @return バージョンカラム名(楽観的排他制御を行わない場合はnull)
+     */
+    protected String getVersionColumn() {
+        return null;
+    }
     
     /**
      * レコードの編集を開始する。
@@ -59,6 +73,10 @@ public abstract class AbstractBindTableRow extends com.hirohiro716.database.Abst
             return;
         }
         super.edit();
+        if (this.getVersionColumn() != null) {
+            this.isEditMode = true;
+            return;
+        }
         try (SQLite sqlite = new SQLite()) {
             sqlite.connect(this.getDatabase().getDatabaseLocation());
             sqlite.begin(IsolationLevel.EXCLUSIVE);
@@ -91,14 +109,42 @@ public abstract class AbstractBindTableRow extends com.hirohiro716.database.Abst
     protected abstract void updateToEditing(SQLite sqlite) throws SQLException, DataNotFoundException;
 
     /**
-     * 編集中のレコードを保持している連想配列で更新する。
+     * 編集中のレコードを保持している連想配列で更新する。<br>
+     * editメソッドで編集を開始している場合は値が変更されたカラムのみを更新し、変更がなければSQLを実行しない。
      *
      * @throws SQLException
      * @throws DataNotFoundException
+     * @throws ConcurrentUpdateException 楽観的排他制御でほかの接続による変更や削除を検出した場合
      */
     @Override
     public void update() throws SQLException, DataNotFoundException {
-        this.getDatabase().update(this.getRow(), this.getTableName(), this.getWhereSet());
+        RudeArray values = this.getChangedValues();
+        if (values.size() == 0) {
+            return;
+        }
+        String versionColumn = this.getVersionColumn();
+        if (versionColumn == null) {
+            this.getDatabase().update(values, this.getTableName(), this.getWhereSet());
+            this.commitChangedValues();
+            return;
+        }
+        Long version = this.getRow().getLong(versionColumn);
+        long nextVersion = 1;
+        WhereSet whereSet = this.getWhereSet().clone();
+        if (version == null) {
+            whereSet.addIsNull(versionColumn);
+        } else {
+            whereSet.add(versionColumn, Comparison.EQUAL, version);
+            nextVersion = version + 1;
+        }
+        values.put(versionColumn, nextVersion);
+        try {
+            this.getDatabase().update(values, this.getTableName(), whereSet);
+        } catch (DataNotFoundException exception) {
+            throw new ConcurrentUpdateException(exception);
+        }
+        this.getRow().put(versionColumn, nextVersion);
+        this.commitChangedValues();
     }
     
     /**
@@ -118,7 +164,7 @@ public abstract class AbstractBindTableRow extends com.hirohiro716.database.Abst
     @Override
     public void close() throws IOException {
         try {
-            if (this.isEditMode) {
+            if (this.isEditMode && this.getVersionColumn() == null) {
                 String location = this.getDatabase().getDatabaseLocation();
                 this.getDatabase().close();
                 try (SQLite sqlite = new SQLite()) {
@@ -129,11 +175,12 @@ public abstract class AbstractBindTableRow extends com.hirohiro716.database.Abst
                 } catch (ClassNotFoundException exception) {
                     exception.printStackTrace();
                 }
-                this.isEditMode = false;
             }
+            this.isEditMode = false;
             this.setRow(null);
         } catch (SQLException exception) {
             throw new IOException(exception);
         } catch (DataNotFoundException exception) {
         }
-    }}
+    }
+}
@@ -3,8 +3,15 @@ package com.hirohiro716.database.sqlite;
 import java.io.Closeable;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.hirohiro716.RudeArray;
+import com.hirohiro716.database.ConcurrentUpdateException;
 import com.hirohiro716.database.sqlite.SQLite.IsolationLevel;
 
 /**
@@ -54,13 +61,85 @@ public abstract class AbstractBindTableRows extends com.hirohiro716.database.Abs
         return this.getDatabase().fetchRows(stringBuilder.toString(), this.getWhereSet().buildParameters());
     }
     
+    /**
+     * "楽観的排他制御には主キーの宣言が必要です。" というエラーメッセージ用の文字列
+     */
+    public static final String ERROR_MESSAGE_PRIMARY_KEY_REQUIRED = "楽観的排他制御には主キーの宣言が必要です。";
+
     private boolean isEditMode = false;
+
+    /**
+     * 楽観的排他制御に使用するバージョンカラム名を取得する。<br>
+     * nullではない値を返すようにオーバーライドすると、editメソッドは別の接続で編集中に変更する処理を行わず、
+     * updateメソッドが検索条件に該当するレコードの主キーごとのバージョンを編集開始時点と照合し、追加または変更するレコードのバージョンを1加算する。<br>
+     * 楽観的排他制御を行う場合はgetPrimaryKeyColumnsメソッドで主キーを宣言する必要がある。
+     *
+     * @return バージョンカラム名(楽観的排他制御を行わない場合はnull)
+     */
+    protected String getVersionColumn() {
+        return null;
+    }
+
+    private HashMap<List<Object>, String> versions = null;
+
+    private IdentityHashMap<RudeArray, Object> previousVersions = null;
+
+    /**
+     * レコードの主キーごとのバージョンを作成する。
+     *
+     * @param rows レコード
+     * @return 主キーとバージョンの文字列表現の連想配列
+     */
+    private HashMap<List<Object>, String> buildVersions(Collection<RudeArray> rows) {
+        HashMap<List<Object>, String> versions = new HashMap<>();
+        for (RudeArray row: rows) {
+            versions.put(this.buildPrimaryKey(row), String.valueOf(row.get(this.getVersionColumn())));
+        }
+        return versions;
+    }
+
+    /**
+     * 検索条件に該当するレコードの主キーごとのバージョンを取得する。
+     *
+     * @return 主キーとバージョンの文字列表現の連想配列
+     * @throws SQLException
+     */
+    private HashMap<List<Object>, String> fetchVersions() throws SQLException {
+        StringBuilder stringBuilder = new StringBuilder("SELECT ");
+        for (String keyColumn: this.getPrimaryKeyColumns()) {
+            stringBuilder.append(keyColumn);
+            stringBuilder.append(", ");
+        }
+        stringBuilder.append(this.getVersionColumn());
+        stringBuilder.append(" FROM ");
+        stringBuilder.append(this.getTableName());
+        RudeArray[] rows;
+        if (this.getWhereSet() == null) {
+            stringBuilder.append(";");
+            rows = this.getDatabase().fetchRows(stringBuilder.toString());
+        } else {
+            stringBuilder.append(" WHERE ");
+            stringBuilder.append(this.getWhereSet().buildParameterClause());
+            stringBuilder.append(";");
+            rows = this.getDatabase().fetchRows(stringBuilder.toString(), this.getWhereSet().buildParameters());
+        }
+        return this.buildVersions(Arrays.asList(rows));
+    }
     
     @Override
     public void edit(String... orders) throws SQLException {
         if (this.isEditMode) {
             return;
         }
+        if (this.getVersionColumn() != null) {
+            if (this.getPrimaryKeyColumns() == null) {
+                throw new SQLException(ERROR_MESSAGE_PRIMARY_KEY_REQUIRED);
+            }
+            super.edit(orders);
+            this.versions = this.buildVersions(this.getRows());
+            this.isEditMode = true;
+            return;
+        }
         super.edit(orders);
         try (SQLite sqlite = new SQLite()) {
             sqlite.connect(this.getDatabase().getDatabaseLocation());
@@ -75,7 +154,78 @@ public abstract class AbstractBindTableRows extends com.hirohiro716.database.Abs
             exception.printStackTrace();
         }
     }
+
+    /**
+     * 追加または変更されるレコードのバージョンを1加算する。楽観的排他制御を行う場合にupdateメソッドから自動的に呼び出される。
+     *
+     * @param row 追加または変更されるレコードの連想配列
+     * @param before 編集開始時点のレコードの連想配列(追加されるレコードの場合はnull)
+     */
+    @Override
+    protected void prepareChangedRow(RudeArray row, RudeArray before) {
+        if (this.previousVersions == null) {
+            return;
+        }
+        String versionColumn = this.getVersionColumn();
+        this.previousVersions.put(row, row.get(versionColumn));
+        Long version;
+        if (before == null) {
+            version = row.getLong(versionColumn);
+        } else {
+            version = before.getLong(versionColumn);
+        }
+        if (version == null) {
+            row.put(versionColumn, 1L);
+        } else {
+            row.put(versionColumn, version + 1);
+        }
+    }
     
+    /**
+     * 編集している複数のレコードを保持している連想配列に置き換える。<br>
+     * 楽観的排他制御を行う場合は、書き込みロックを取得した後に編集開始時点から主キーごとのバージョンに変更がないことを確認する。
+     *
+     * @throws SQLException
+     * @throws ConcurrentUpdateException 楽観的排他制御でほかの接続による変更を検出した場合
+     */
+    @Override
+    public void update() throws SQLException {
+        String versionColumn = this.getVersionColumn();
+        if (versionColumn == null || this.versions == null) {
+            super.update();
+            return;
+        }
+        SQLite sqlite = this.getDatabase();
+        boolean isImplicitTransaction = sqlite.getIsolationLevel() == null;
+        if (isImplicitTransaction) {
+            sqlite.begin(IsolationLevel.IMMEDIATE);
+        }
+        boolean isSucceeded = false;
+        this.previousVersions = new IdentityHashMap<>();
+        try {
+            if (this.versions.equals(this.fetchVersions()) == false) {
+                throw new ConcurrentUpdateException();
+            }
+            super.update();
+            HashMap<List<Object>, String> savedVersions = this.fetchVersions();
+            if (isImplicitTransaction) {
+                sqlite.commit();
+            }
+            this.versions = savedVersions;
+            isSucceeded = true;
+        } finally {
+            if (isSucceeded == false) {
+                for (Map.Entry<RudeArray, Object> entry: this.previousVersions.entrySet()) {
+                    entry.getKey().put(versionColumn, entry.getValue());
+                }
+                if (isImplicitTransaction && sqlite.getIsolationLevel() != null) {
+                    sqlite.rollback();
+                }
+            }
+            this.previousVersions = null;
+        }
+    }
+
     /**
      * レコードが編集中かどうかの判定メソッド。これはedit()メソッドから自動的に呼び出され編集するかの判定に使われる。
      *
@@ -109,7 +259,7 @@ public abstract class AbstractBindTableRows extends com.hirohiro716.database.Abs
     @Override
     public void close() throws IOException {
         try {
-            if (this.isEditMode) {
+            if (this.isEditMode && this.getVersionColumn() == null) {
                 String location = this.getDatabase().getDatabaseLocation();
                 this.getDatabase().close();
                 try (SQLite sqlite = new SQLite()) {
@@ -120,8 +270,9 @@ public abstract class AbstractBindTableRows extends com.hirohiro716.database.Abs
                 } catch (ClassNotFoundException exception) {
                     exception.printStackTrace();
                 }
-                this.isEditMode = false;
             }
+            this.isEditMode = false;
+            this.versions = null;
             this.getRows().clear();
         } catch (SQLException exception) {
             throw new IOException(exception);
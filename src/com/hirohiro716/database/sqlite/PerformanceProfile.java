@@ -0,0 +1,275 @@
+package com.hirohiro716.database.sqlite;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+
+import com.hirohiro716.StringConverter;
+
+/**
+ * SQLiteの接続時に適用するPRAGMAの設定を保持するクラス。<br>
+ * nullが設定されている項目はドライバーの既定値のまま変更しない。
+ *
+ * @author hiro
+ *
+ */
+public class PerformanceProfile {
+
+    /**
+     * ジャーナルモード。
+     *
+     * @author hiro
+     */
+    public enum JournalMode {
+        /**
+         * コミット時にジャーナルファイルを削除する
+         */
+        DELETE,
+        /**
+         * コミット時にジャーナルファイルを切り詰める
+         */
+        TRUNCATE,
+        /**
+         * コミット時にジャーナルファイルのヘッダーを無効化する
+         */
+        PERSIST,
+        /**
+         * ジャーナルをメモリ上に保持する
+         */
+        MEMORY,
+        /**
+         * 先行書き込みログを使用する。読み込みと書き込みが互いにブロックしない
+         */
+        WAL,
+        /**
+         * ジャーナルを使用しない
+         */
+        OFF,
+    }
+
+    /**
+     * ディスクへの同期の度合い。
+     *
+     * @author hiro
+     */
+    public enum Synchronous {
+        /**
+         * 同期しない
+         */
+        OFF,
+        /**
+         * 重要な時点でのみ同期する。WALモードではコミットごとの同期を行わない
+         */
+        NORMAL,
+        /**
+         * コミットごとに同期する
+         */
+        FULL,
+        /**
+         * FULLに加えてジャーナルの削除後にも同期する
+         */
+        EXTRA,
+    }
+
+    /**
+     * 一時テーブルや一時インデックスの保存先。
+     *
+     * @author hiro
+     */
+    public enum TempStore {
+        /**
+         * コンパイル時の既定値
+         */
+        DEFAULT,
+        /**
+         * ファイル
+         */
+        FILE,
+        /**
+         * メモリ
+         */
+        MEMORY,
+    }
+
+    /**
+     * 複数の読み込み接続と1つの書き込み接続を並行して使用する場合に適した設定を作成する。<br>
+     * WALモード・synchronous=NORMAL・256MBのメモリマップ・64MBのページキャッシュ・一時領域はメモリ・ロック待ち5秒。
+     *
+     * @return 設定
+     */
+    public static PerformanceProfile createConcurrentProfile() {
+        PerformanceProfile profile = new PerformanceProfile();
+        profile.setJournalMode(JournalMode.WAL);
+        profile.setSynchronous(Synchronous.NORMAL);
+        profile.setMmapSize(256L * 1024 * 1024);
+        profile.setCacheSize(-64 * 1024);
+        profile.setTempStore(TempStore.MEMORY);
+        profile.setBusyTimeout(5000);
+        return profile;
+    }
+
+    private JournalMode journalMode = null;
+
+    /**
+     * ジャーナルモードを取得する。
+     *
+     * @return ジャーナルモード
+     */
+    public JournalMode getJournalMode() {
+        return this.journalMode;
+    }
+
+    /**
+     * ジャーナルモードを設定する。
+     *
+     * @param journalMode ジャーナルモード
+     */
+    public void setJournalMode(JournalMode journalMode) {
+        this.journalMode = journalMode;
+    }
+
+    private Synchronous synchronous = null;
+
+    /**
+     * ディスクへの同期の度合いを取得する。
+     *
+     * @return 同期の度合い
+     */
+    public Synchronous getSynchronous() {
+        return this.synchronous;
+    }
+
+    /**
+     * ディスクへの同期の度合いを設定する。
+     *
+     * @param synchronous 同期の度合い
+     */
+    public void setSynchronous(Synchronous synchronous) {
+        this.synchronous = synchronous;
+    }
+
+    private Long mmapSize = null;
+
+    /**
+     * メモリマップI/Oに使用する最大バイト数を取得する。
+     *
+     * @return バイト数
+     */
+    public Long getMmapSize() {
+        return this.mmapSize;
+    }
+
+    /**
+     * メモリマップI/Oに使用する最大バイト数を設定する。0の場合はメモリマップI/Oを使用しない。
+     *
+     * @param mmapSize バイト数
+     */
+    public void setMmapSize(Long mmapSize) {
+        this.mmapSize = mmapSize;
+    }
+
+    private Integer cacheSize = null;
+
+    /**
+     * ページキャッシュのサイズを取得する。
+     *
+     * @return 正の値の場合はページ数、負の値の場合はKiB単位のサイズ
+     */
+    public Integer getCacheSize() {
+        return this.cacheSize;
+    }
+
+    /**
+     * ページキャッシュのサイズを設定する。
+     *
+     * @param cacheSize 正の値の場合はページ数、負の値の場合はKiB単位のサイズ
+     */
+    public void setCacheSize(Integer cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    private TempStore tempStore = null;
+
+    /**
+     * 一時テーブルや一時インデックスの保存先を取得する。
+     *
+     * @return 保存先
+     */
+    public TempStore getTempStore() {
+        return this.tempStore;
+    }
+
+    /**
+     * 一時テーブルや一時インデックスの保存先を設定する。
+     *
+     * @param tempStore 保存先
+     */
+    public void setTempStore(TempStore tempStore) {
+        this.tempStore = tempStore;
+    }
+
+    private Integer busyTimeout = null;
+
+    /**
+     * データベースがロックされている場合に待機するミリ秒数を取得する。
+     *
+     * @return ミリ秒数
+     */
+    public Integer getBusyTimeout() {
+        return this.busyTimeout;
+    }
+
+    /**
+     * データベースがロックされている場合に待機するミリ秒数を設定する。
+     *
+     * @param busyTimeout ミリ秒数
+     */
+    public void setBusyTimeout(Integer busyTimeout) {
+        this.busyTimeout = busyTimeout;
+    }
+
+    /**
+     * 設定に対応するPRAGMA文を作成する。
+     *
+     * @param isReadOnly 読み込み専用の接続かどうか(ジャーナルモードは変更しない)
+     * @return PRAGMA文
+     */
+    String[] buildPragmas(boolean isReadOnly) {
+        ArrayList<String> pragmas = new ArrayList<>();
+        if (this.busyTimeout != null) {
+            pragmas.add(StringConverter.join("PRAGMA busy_timeout = ", this.busyTimeout, ";"));
+        }
+        if (this.journalMode != null && isReadOnly == false) {
+            pragmas.add(StringConverter.join("PRAGMA journal_mode = ", this.journalMode.toString(), ";"));
+        }
+        if (this.synchronous != null) {
+            pragmas.add(StringConverter.join("PRAGMA synchronous = ", this.synchronous.toString(), ";"));
+        }
+        if (this.mmapSize != null) {
+            pragmas.add(StringConverter.join("PRAGMA mmap_size = ", this.mmapSize, ";"));
+        }
+        if (this.cacheSize != null) {
+            pragmas.add(StringConverter.join("PRAGMA cache_size = ", this.cacheSize, ";"));
+        }
+        if (this.tempStore != null) {
+            pragmas.add(StringConverter.join("PRAGMA temp_store = ", this.tempStore.toString(), ";"));
+        }
+        return pragmas.toArray(new String[pragmas.size()]);
+    }
+
+    /**
+     * 設定を接続に適用する。結果を返すPRAGMAがあるため更新系SQLとしては実行しない。
+     *
+     * @param connection 接続
+     * @param isReadOnly 読み込み専用の接続かどうか
+     * @throws SQLException
+     */
+    void apply(Connection connection, boolean isReadOnly) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String pragma: this.buildPragmas(isReadOnly)) {
+                statement.execute(pragma);
+            }
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.hirohiro716.database.sqlite;
 
+import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
 
 import com.hirohiro716.StringConverter;
 import com.hirohiro716.database.AbstractDatabase;
@@ -67,10 +70,74 @@ public class SQLite extends AbstractDatabase {
     @Override
     public void connect(String databaseLocation) throws ClassNotFoundException, SQLException {
         Class.forName("org.sqlite.JDBC");
-        this.setConnection(DriverManager.getConnection("jdbc:sqlite:" + databaseLocation));
+        Properties properties = new Properties();
+        if (this.isReadOnly) {
+            properties.setProperty("open_mode", String.valueOf(SQLITE_OPEN_READONLY));
+        }
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseLocation, properties);
+        try {
+            if (this.performanceProfile != null) {
+                this.performanceProfile.apply(connection, this.isReadOnly);
+            }
+            if (this.isReadOnly) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("PRAGMA query_only = 1;");
+                }
+            }
+        } catch (SQLException exception) {
+            connection.close();
+            throw exception;
+        }
+        this.setConnection(connection);
         this.databaseLocation = databaseLocation;
         this.isolationLevel = null;
     }
+
+    /**
+     * 読み込み専用で開く場合にドライバーに指定するオープンモード。
+     */
+    private static final int SQLITE_OPEN_READONLY = 0x00000001;
+
+    private PerformanceProfile performanceProfile = null;
+
+    /**
+     * 接続時に適用するPRAGMAの設定を取得する。
+     *
+     * @return 設定(nullの場合はドライバーの既定値)
+     */
+    public PerformanceProfile getPerformanceProfile() {
+        return this.performanceProfile;
+    }
+
+    /**
+     * 接続時に適用するPRAGMAの設定を指定する。connectメソッドの前に呼び出す必要がある。
+     *
+     * @param performanceProfile 設定(nullの場合はドライバーの既定値)
+     */
+    public void setPerformanceProfile(PerformanceProfile performanceProfile) {
+        this.performanceProfile = performanceProfile;
+    }
+
+    private boolean isReadOnly = false;
+
+    /**
+     * 読み込み専用で接続するかどうかを取得する。
+     *
+     * @return 結果
+     */
+    public boolean isReadOnly() {
+        return this.isReadOnly;
+    }
+
+    /**
+     * 読み込み専用で接続するかどうかを指定する。connectメソッドの前に呼び出す必要がある。<br>
+     * WALモードのデータベースでは、読み込み専用の接続を複数使用しても1つの書き込み接続をブロックしない。
+     *
+     * @param isReadOnly
+     */
+    public void setReadOnly(boolean isReadOnly) {
+        this.isReadOnly = isReadOnly;
+    }
     
     private String databaseLocation = null;
     
@@ -125,10 +192,11 @@ public class SQLite extends AbstractDatabase {
         sql.subSequence(0, sql.length() - 2);
         sql.append(");");
         this.execute(sql.toString(), values.getValues());
+        this.invalidateQueryResultCache(tableName);
     }
 
     @Override
-    public void update(RudeArray values, String tableName, WhereSet whereSet) throws SQLException, DataNotFoundException {
+    public int update(RudeArray values, String tableName, WhereSet whereSet) throws SQLException, DataNotFoundException {
         StringBuilder sql = new StringBuilder("UPDATE ");
         sql.append(tableName);
         sql.append(" SET ");
@@ -146,9 +214,11 @@ public class SQLite extends AbstractDatabase {
         sql.append(";");
         Object[] parameters = ArrayHelper.merge(values.getValues(), whereSet.buildParameters());
         int result = this.execute(sql.toString(), parameters);
+        this.invalidateQueryResultCache(tableName);
         if (result == 0) {
             throw new DataNotFoundException();
         }
+        return result;
     }
 
     /**
@@ -167,12 +237,64 @@ public class SQLite extends AbstractDatabase {
     public void commit() throws SQLException {
         this.execute("COMMIT;");
         this.isolationLevel = null;
+        this.invalidateUncommittedQueryResultCache();
     }
 
     @Override
     public void rollback() throws SQLException {
-        this.execute("ROLLBACK;");
-        this.isolationLevel = null;
+        try {
+            this.execute("ROLLBACK;");
+        } finally {
+            this.isolationLevel = null;
+            this.clearStatementCache();
+            this.invalidateUncommittedQueryResultCache();
+        }
+    }
+
+    @Override
+    public int getMaximumParameterCount() {
+        return 999;
+    }
+
+    /**
+     * データベースがロックされている場合(SQLITE_BUSY、SQLITE_LOCKED)も再試行可能とする。拡張リザルトコードも下位8ビットで判定する。
+     */
+    @Override
+    protected boolean isRetryableError(SQLException exception) {
+        switch (exception.getErrorCode() & 0xff) {
+        case 5:
+        case 6:
+            return true;
+        default:
+            return super.isRetryableError(exception);
+        }
+    }
+
+    @Override
+    public boolean isTransactionActive() {
+        return this.isolationLevel != null;
+    }
+
+    @Override
+    protected void beginImplicitTransaction() throws SQLException {
+        this.begin(IsolationLevel.IMMEDIATE);
+    }
+
+    @Override
+    protected void endImplicitTransaction(boolean isCommit) throws SQLException {
+        if (isCommit) {
+            this.commit();
+        } else {
+            this.rollback();
+        }
+    }
+
+    @Override
+    protected void resetForReuse() throws SQLException {
+        if (this.isolationLevel != null) {
+            this.rollback();
+        }
+        super.resetForReuse();
     }
 
     @Override @Deprecated
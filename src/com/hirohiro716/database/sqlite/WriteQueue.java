@@ -0,0 +1,351 @@
+package com.hirohiro716.database.sqlite;
+
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.hirohiro716.RudeArray;
+import com.hirohiro716.database.AbstractDatabase.TransactionProcessor;
+import com.hirohiro716.database.WhereSet;
+
+/**
+ * 複数のスレッドからのSQLiteへの書き込みを1つの書き込み専用スレッドで順番に実行するキュー。<br>
+ * 一定の件数か時間の範囲で受け付けた書き込みを1つのトランザクションにまとめてコミットするため、書き込みごとにコミットする場合よりディスクへの同期の回数が少なくなる。<br>
+ * 書き込みは受け付けた順に実行され、それぞれの書き込みはセーブポイント内で実行されるため、失敗した書き込みだけが取り消される。
+ * 各書き込みのFutureはトランザクションのコミットが終了した後に完了する。
+ *
+ * @author hiro
+ *
+ */
+public class WriteQueue implements Closeable {
+
+    /**
+     * "書き込みキューは閉じられています。" というエラーメッセージ用の文字列
+     */
+    public static final String ERROR_MESSAGE_CLOSED = "書き込みキューは閉じられています。";
+
+    /**
+     * コンストラクタ。書き込み専用スレッドを開始する。
+     *
+     * @param sqlite 接続済みSQLite(このキューの書き込み専用スレッドのみで使用され、closeメソッドで閉じられる)
+     */
+    public WriteQueue(SQLite sqlite) {
+        this.sqlite = sqlite;
+        this.thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                WriteQueue.this.processQueue();
+            }
+        }, "SQLite write queue");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private SQLite sqlite;
+
+    private Thread thread;
+
+    private LinkedBlockingQueue<PendingTask<?>> queue = new LinkedBlockingQueue<>();
+
+    private boolean isClosed = false;
+
+    private volatile int maximumBatchSize = 1000;
+
+    /**
+     * 1つのトランザクションにまとめる書き込みの最大数を取得する。
+     *
+     * @return 最大数
+     */
+    public int getMaximumBatchSize() {
+        return this.maximumBatchSize;
+    }
+
+    /**
+     * 1つのトランザクションにまとめる書き込みの最大数を設定する。初期値は1000。
+     *
+     * @param maximumBatchSize 最大数
+     */
+    public void setMaximumBatchSize(int maximumBatchSize) {
+        this.maximumBatchSize = Math.max(maximumBatchSize, 1);
+    }
+
+    private volatile long flushIntervalMillis = 10;
+
+    /**
+     * 最初の書き込みを受け付けてから、ほかの書き込みを待つ最大の時間を取得する。
+     *
+     * @return 時間(ミリ秒)
+     */
+    public long getFlushIntervalMillis() {
+        return this.flushIntervalMillis;
+    }
+
+    /**
+     * 最初の書き込みを受け付けてから、ほかの書き込みを待つ最大の時間を設定する。初期値は10ミリ秒。<br>
+     * 0の場合は待たずに、その時点で受け付けている書き込みをまとめる。
+     *
+     * @param flushIntervalMillis 時間(ミリ秒)
+     */
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = Math.max(flushIntervalMillis, 0);
+    }
+
+    /**
+     * 書き込み専用スレッドで実行する書き込みのインターフェース。
+     *
+     * @author hiro
+     *
+     * @param <T> 書き込み結果の型
+     */
+    public interface WriteTask<T> {
+
+        /**
+         * 書き込みを実行する。ロック待ちなどでトランザクション全体が再試行される場合があるため、何度実行しても同じ結果になる必要がある。
+         *
+         * @param sqlite トランザクションが開始されたSQLite
+         * @return 書き込み結果
+         * @throws Exception
+         */
+        public T write(SQLite sqlite) throws Exception;
+    }
+
+    /**
+     * 受け付けた書き込みと、その結果を保持するクラス。
+     *
+     * @author hiro
+     *
+     * @param <T> 書き込み結果の型
+     */
+    private static class PendingTask<T> {
+
+        /**
+         * コンストラクタ。
+         *
+         * @param task 書き込み
+         */
+        private PendingTask(WriteTask<T> task) {
+            this.task = task;
+        }
+
+        private WriteTask<T> task;
+
+        private CompletableFuture<T> future = new CompletableFuture<>();
+
+        private T result = null;
+
+        private SQLException exception = null;
+
+        /**
+         * セーブポイント内で書き込みを実行して結果を保持する。
+         *
+         * @param sqlite トランザクションが開始されたSQLite
+         */
+        private void run(SQLite sqlite) {
+            this.result = null;
+            this.exception = null;
+            try {
+                this.result = sqlite.runInTransaction(new TransactionProcessor<T>() {
+
+                    @Override
+                    public T process() throws Exception {
+                        return PendingTask.this.task.write(sqlite);
+                    }
+                });
+            } catch (SQLException exception) {
+                this.exception = exception;
+            }
+        }
+
+        /**
+         * 保持している結果でFutureを完了する。
+         */
+        private void complete() {
+            if (this.exception != null) {
+                this.future.completeExceptionally(this.exception);
+            } else {
+                this.future.complete(this.result);
+            }
+        }
+    }
+
+    /**
+     * 書き込みを受け付ける。
+     *
+     * @param <T> 書き込み結果の型
+     * @param task 書き込み
+     * @return コミット後に書き込み結果で完了するFuture
+     */
+    public <T> CompletableFuture<T> submit(WriteTask<T> task) {
+        PendingTask<T> pendingTask = new PendingTask<>(task);
+        synchronized (this) {
+            if (this.isClosed) {
+                pendingTask.future.completeExceptionally(new SQLException(ERROR_MESSAGE_CLOSED));
+                return pendingTask.future;
+            }
+            this.queue.add(pendingTask);
+        }
+        return pendingTask.future;
+    }
+
+    /**
+     * 連想配列の情報をテーブルに追加する書き込みを受け付ける。
+     *
+     * @param values 連想配列
+     * @param tableName テーブル名
+     * @return コミット後に完了するFuture
+     */
+    public CompletableFuture<Void> insert(RudeArray values, String tableName) {
+        return this.submit(new WriteTask<Void>() {
+
+            @Override
+            public Void write(SQLite sqlite) throws Exception {
+                sqlite.insert(values, tableName);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 抽出できたレコードをすべて連想配列の情報で更新する書き込みを受け付ける。
+     *
+     * @param values 連想配列
+     * @param tableName テーブル名
+     * @param whereSet 更新対象の抽出条件
+     * @return コミット後に更新レコード数で完了するFuture
+     */
+    public CompletableFuture<Integer> update(RudeArray values, String tableName, WhereSet whereSet) {
+        return this.submit(new WriteTask<Integer>() {
+
+            @Override
+            public Integer write(SQLite sqlite) throws Exception {
+                return sqlite.update(values, tableName, whereSet);
+            }
+        });
+    }
+
+    /**
+     * 更新系SQLを実行する書き込みを受け付ける。
+     *
+     * @param sql 更新系SQL
+     * @param params パラメータ
+     * @return コミット後に更新レコード数で完了するFuture
+     */
+    public CompletableFuture<Integer> execute(String sql, Object[] params) {
+        return this.submit(new WriteTask<Integer>() {
+
+            @Override
+            public Integer write(SQLite sqlite) throws Exception {
+                return sqlite.execute(sql, params);
+            }
+        });
+    }
+
+    /**
+     * 実行を待っている書き込みの数を取得する。
+     *
+     * @return 書き込みの数
+     */
+    public int getNumberOfPendingTasks() {
+        return this.queue.size();
+    }
+
+    /**
+     * キューが閉じられていて、実行を待っている書き込みがないかどうかを判定する。
+     *
+     * @return 結果
+     */
+    private synchronized boolean isFinished() {
+        return this.isClosed && this.queue.isEmpty();
+    }
+
+    /**
+     * 書き込み専用スレッドの処理。キューが閉じられて書き込みがなくなるまで、受け付けた書き込みをまとめて実行する。
+     */
+    private void processQueue() {
+        ArrayList<PendingTask<?>> batch = new ArrayList<>();
+        while (true) {
+            try {
+                PendingTask<?> firstTask = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (firstTask == null) {
+                    if (this.isFinished()) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(firstTask);
+                long deadline = System.nanoTime() + this.flushIntervalMillis * 1000000L;
+                while (batch.size() < this.maximumBatchSize) {
+                    long remainingNanos = deadline - System.nanoTime();
+                    PendingTask<?> task;
+                    if (remainingNanos > 0) {
+                        task = this.queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    } else {
+                        task = this.queue.poll();
+                    }
+                    if (task == null) {
+                        break;
+                    }
+                    batch.add(task);
+                }
+            } catch (InterruptedException exception) {
+                synchronized (this) {
+                    this.isClosed = true;
+                }
+            }
+            if (batch.size() > 0) {
+                this.writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 書き込みを1つのトランザクションで実行し、コミット後に各書き込みのFutureを完了する。
+     *
+     * @param batch 書き込み
+     */
+    private void writeBatch(List<PendingTask<?>> batch) {
+        try {
+            this.sqlite.runInTransaction(new TransactionProcessor<Void>() {
+
+                @Override
+                public Void process() throws Exception {
+                    for (PendingTask<?> task: batch) {
+                        task.run(WriteQueue.this.sqlite);
+                    }
+                    return null;
+                }
+            });
+        } catch (SQLException exception) {
+            for (PendingTask<?> task: batch) {
+                task.future.completeExceptionally(exception);
+            }
+            return;
+        }
+        for (PendingTask<?> task: batch) {
+            task.complete();
+        }
+    }
+
+    /**
+     * 新しい書き込みの受け付けを終了し、受け付け済みの書き込みがすべて実行されるのを待ってからSQLiteを閉じる。
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            this.isClosed = true;
+        }
+        try {
+            this.thread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        this.sqlite.close();
+    }
+}